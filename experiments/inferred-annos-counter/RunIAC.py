@@ -27,58 +27,31 @@ for index, row in annotationsTable.iterrows():
     name = row["Annotation"].split(".")[-1]
     annotationsTable.at[index, 'Names'] = name
 
-    
-# This will get all the files from a path with a particular extension
-def get_all_files(path, extension):
-    file_list = []
-    for root, dirs_list, files_list in os.walk(path):
-        for file_name in files_list:
-            if os.path.splitext(file_name)[-1] == extension:
-                file_name_path = os.path.join(root, file_name)
-                file_list.append(os.path.abspath(file_name_path))
-    return file_list
-    
-javafiles = get_all_files('inputExamples/'+project_name+'/human-written/', '.java')
-ajavafiles = get_all_files('inputExamples/'+project_name+'/generated/', '.ajava')
-
 # In the inputExamples/project-name folder create a new folder called the output that will contain all the outputs of inferred-annos-counter
 if os.path.exists("inputExamples/"+project_name+"/output") == 0:
     os.system("mkdir "+"inputExamples/"+project_name+"/output")
 
-# For each java file, inferred-annos-counter calculates the "Original inferred count" and store it in the dataframe
-for jf in javafiles:
-    jf_name = jf[:-5]
-    jf_name = jf_name.split("/")[-1]
-    ajf_list = []
-    
-    for ajf in ajavafiles:
-        ajf_name = ajf[:-6].split("/")[-1]
-        if len(jf_name) == len(ajf_name):
-            continue
-        if jf_name in ajf_name and ajf_name[0:len(jf_name)] == jf_name:
-            ajf_list.append(ajf)
-            
-    if len(ajf_list) == 0:
-        continue
-    ajf_all = ' '.join(ajf_list)
-    
-    outputFileName = "inputExamples/"+project_name+"/output/"+jf_name+".txt"
-    process = subprocess.run("./gradlew run --args='"+ jf +" " + ajf_all + "' >> " + outputFileName, shell=True)
-    
-    f = open(outputFileName, "r")
-    for x in f:
-      if "@" in x:
-          lineElements = x.split(" ")
-          annot = lineElements[0][1:]
-          stats = lineElements[2].split("/")
-          found = stats[0]
-          original = stats[1]
-          
-          if annotationsTable[annotationsTable["Names"]==annot].empty:
-              print(annot, annotationsTable[annotationsTable["Names"]==annot])
-              print()
-              continue
-          annotationsTable.loc[annotationsTable["Names"]==annot, "Original inferred count"] = int(found) + int(annotationsTable.loc[annotationsTable["Names"]==annot, "Original inferred count"].values[0])
+# The batch mode of inferred-annos-counter pairs each java file with its ajava files and calculates the
+# "Original inferred count" for all of them in a single run. The counts are stored in the dataframe.
+human_written = os.path.abspath('inputExamples/'+project_name+'/human-written/')
+generated = os.path.abspath('inputExamples/'+project_name+'/generated/')
+outputFileName = "inputExamples/"+project_name+"/output/iac_output.txt"
+process = subprocess.run("./gradlew -q runBatch --args='"+ human_written +" " + generated + "' > " + outputFileName, shell=True)
+
+f = open(outputFileName, "r")
+for x in f:
+  if "@" in x:
+      lineElements = x.split(" ")
+      annot = lineElements[0][1:]
+      stats = lineElements[2].split("/")
+      found = stats[0]
+      original = stats[1]
+
+      if annotationsTable[annotationsTable["Names"]==annot].empty:
+          print(annot, annotationsTable[annotationsTable["Names"]==annot])
+          print()
+          continue
+      annotationsTable.loc[annotationsTable["Names"]==annot, "Original inferred count"] = int(found) + int(annotationsTable.loc[annotationsTable["Names"]==annot, "Original inferred count"].values[0])
 
 # This line calculates the "Original inferred %"
 annotationsTable["Original inferred %"] = (annotationsTable["Original inferred count"]/annotationsTable["Original count"])*100
@@ -0,0 +1,88 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.difflib.patch.Patch;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the diff engines of the diff-based algorithm on some of the largest files of the hadoop
+ * and hbase corpora, each diffed with its Resource Leak Checker .ajava file. Only the diff is
+ * measured; the fingerprint and histogram engines include the fingerprinting of both files. Run it
+ * with ./gradlew jmh from experiments/inferred-annos-counter, and add -prof gc to the JMH arguments
+ * to measure the allocation. The README has the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffBenchmark {
+
+  /** The human-written file, relative to the app directory. */
+  @Param({
+    "../inputExamples/hadoop/human-written/org/apache/hadoop/hdfs/server/namenode/FSEditLogOp.java",
+    "../inputExamples/hadoop/human-written/org/apache/hadoop/hdfs/server/blockmanagement/BlockManager.java",
+    "../inputExamples/hbase/human-written/server/org/apache/hadoop/hbase/regionserver/HRegion.java"
+  })
+  public String file;
+
+  /** The normalized lines of the human-written file. */
+  private List<String> original;
+
+  /** The normalized lines of the .ajava file. */
+  private List<String> revised;
+
+  /** Parses and normalizes both files, which is not part of the measurement. */
+  @Setup
+  public void setUp() {
+    String ajava =
+        file.replace("/human-written/", "/generated/")
+            .replace(
+                ".java", "-org.checkerframework.checker.resourceleak.ResourceLeakChecker.ajava");
+    original = InferredAnnosCounter.normalizeLines(ParsedFile.parse(Paths.get(file)));
+    revised = InferredAnnosCounter.normalizeLines(ParsedFile.parse(Paths.get(ajava)));
+  }
+
+  /**
+   * Diffs the files with java-diff-utils, which compares the lines as strings.
+   *
+   * @return the diff
+   */
+  @Benchmark
+  public Patch<String> myers() {
+    return InferredAnnosCounter.DiffEngine.MYERS.create(original).diff(revised);
+  }
+
+  /**
+   * Diffs the files with {@link FingerprintDiff}.
+   *
+   * @return the diff
+   */
+  @Benchmark
+  public Patch<String> fingerprint() {
+    return InferredAnnosCounter.DiffEngine.FINGERPRINT.create(original).diff(revised);
+  }
+
+  /**
+   * Diffs the files with {@link HistogramDiff}.
+   *
+   * @return the diff
+   */
+  @Benchmark
+  public Patch<String> histogram() {
+    return InferredAnnosCounter.DiffEngine.HISTOGRAM.create(original).diff(revised);
+  }
+}
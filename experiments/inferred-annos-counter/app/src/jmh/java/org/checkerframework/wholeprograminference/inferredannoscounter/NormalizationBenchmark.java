@@ -0,0 +1,58 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the normalization stage of the diff-based algorithm: {@link
+ * InferredAnnosCounter#normalizeLines(String)}, which splits the printed file into lines, turns
+ * fully-qualified annotations into simple ones, and canonicalizes the arguments of annotations. The
+ * files are two of the largest in the hbase corpus. Run it with ./gradlew jmh from
+ * experiments/inferred-annos-counter. The README has the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizationBenchmark {
+
+  /** The file whose lines are normalized, relative to the app directory. */
+  @Param({
+    "../inputExamples/hbase/human-written/client/org/apache/hadoop/hbase/shaded/protobuf/ProtobufUtil.java",
+    "../inputExamples/hbase/human-written/client/org/apache/hadoop/hbase/client/RawAsyncHBaseAdmin.java"
+  })
+  public String file;
+
+  /** The file as printed by JavaParser, which is what the counter normalizes. */
+  private String text;
+
+  /** Parses and prints the file, which is not part of the measurement. */
+  @Setup
+  public void setUp() {
+    text = ParsedFile.parse(Paths.get(file)).getText();
+  }
+
+  /**
+   * Normalizes the file.
+   *
+   * @return the normalized lines of the file
+   */
+  @Benchmark
+  public List<String> normalize() {
+    return InferredAnnosCounter.normalizeLines(text);
+  }
+}
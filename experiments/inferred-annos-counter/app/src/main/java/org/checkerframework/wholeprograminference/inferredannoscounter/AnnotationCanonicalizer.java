@@ -0,0 +1,170 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MemberValuePair;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Puts annotations into a canonical form, so that two annotations that mean the same thing are
+ * equal as strings. The canonical form is computed from the AST of the annotation:
+ *
+ * <ul>
+ *   <li>an element value that is an array with a single element is replaced by the element, because
+ *       Java permits single-value arrays to omit the curly braces:
+ *       {@literal @}EnsuresNonNull("tz1") and {@literal @}EnsuresNonNull({"tz1"}) are the same
+ *       annotation. Nested arrays are kept, because the braces can only be omitted at the outermost
+ *       level;
+ *   <li>a single element named "value" is written in positional form, so
+ *       {@literal @}EnsuresNonNull(value = "tz1") is also the same annotation;
+ *   <li>an empty argument list is removed;
+ *   <li>everything else, including the order of the elements and of the values in arrays, is kept,
+ *       and the curly braces of arrays with several values are kept, so that ({3, 4}) and ({3},
+ *       {4}) stay different.
+ * </ul>
+ *
+ * <p>The whitespace of the result is the whitespace of the JavaParser printer, not the whitespace
+ * of the input.
+ *
+ * <p>The same few hundred annotations occur thousands of times in a project, so the canonical form
+ * of an annotation text is cached. Every annotation line of every file goes through the cache, on
+ * all the threads of a batch, so looking up a cached text takes no lock.
+ */
+final class AnnotationCanonicalizer {
+
+  /** Do not instantiate. */
+  private AnnotationCanonicalizer() {
+    throw new Error("Do not instantiate AnnotationCanonicalizer");
+  }
+
+  /** The maximum number of annotation texts whose canonical form is cached. */
+  private static final int CACHE_SIZE = 4096;
+
+  /**
+   * The canonical forms of annotation texts, keyed by the text. Shared by all threads. When it is
+   * full, it is cleared rather than keeping the most recently used entries: the texts of a project
+   * are few, so it is almost never full, and tracking the order of use would make every lookup a
+   * write.
+   */
+  private static final ConcurrentHashMap<String, String> CACHE =
+      new ConcurrentHashMap<>(2 * CACHE_SIZE);
+
+  /**
+   * Returns the canonical form of the given annotation text. If the text cannot be parsed as an
+   * annotation, it is formatted with {@link InferredAnnosCounter#formatAnnotaionsWithArguments}
+   * instead.
+   *
+   * @param annotation the text of a single annotation, such as a line of a file after {@link
+   *     AnnotationLexer#splitLines(String)}
+   * @return the canonical form of the annotation
+   */
+  static String canonicalize(String annotation) {
+    String cached = CACHE.get(annotation);
+    if (cached != null) {
+      return cached;
+    }
+    String result;
+    try {
+      result = canonicalize(StaticJavaParser.parseAnnotation(annotation));
+    } catch (ParseProblemException e) {
+      result = InferredAnnosCounter.formatAnnotaionsWithArguments(annotation);
+    }
+    if (CACHE.size() >= CACHE_SIZE) {
+      CACHE.clear();
+    }
+    CACHE.put(annotation, result);
+    return result;
+  }
+
+  /**
+   * Returns the canonical form of the given annotation. Fully-qualified names are changed to simple
+   * names with {@link InferredAnnosCounter#extractCheckerPackage(String)}.
+   *
+   * @param anno an annotation
+   * @return the canonical form of the annotation
+   */
+  static String canonicalize(AnnotationExpr anno) {
+    StringBuilder result = new StringBuilder();
+    appendAnnotation(anno, result);
+    return InferredAnnosCounter.extractCheckerPackage(result.toString());
+  }
+
+  /**
+   * Appends the canonical form of an annotation to a builder.
+   *
+   * @param anno an annotation
+   * @param result the builder to append to
+   */
+  private static void appendAnnotation(AnnotationExpr anno, StringBuilder result) {
+    result.append('@').append(anno.getNameAsString());
+    if (anno instanceof SingleMemberAnnotationExpr) {
+      result.append('(');
+      appendValue(((SingleMemberAnnotationExpr) anno).getMemberValue(), result);
+      result.append(')');
+    } else if (anno instanceof NormalAnnotationExpr) {
+      NodeList<MemberValuePair> pairs = ((NormalAnnotationExpr) anno).getPairs();
+      if (pairs.isEmpty()) {
+        return;
+      }
+      result.append('(');
+      if (pairs.size() == 1 && pairs.get(0).getNameAsString().equals("value")) {
+        appendValue(pairs.get(0).getValue(), result);
+      } else {
+        for (int i = 0; i < pairs.size(); i++) {
+          if (i != 0) {
+            result.append(',');
+          }
+          result.append(pairs.get(i).getNameAsString()).append('=');
+          appendValue(pairs.get(i).getValue(), result);
+        }
+      }
+      result.append(')');
+    }
+  }
+
+  /**
+   * Appends the canonical form of an element value of an annotation to a builder.
+   *
+   * @param value an element value
+   * @param result the builder to append to
+   */
+  private static void appendValue(Expression value, StringBuilder result) {
+    if (value instanceof ArrayInitializerExpr
+        && ((ArrayInitializerExpr) value).getValues().size() == 1) {
+      appendNestedValue(((ArrayInitializerExpr) value).getValues().get(0), result);
+    } else {
+      appendNestedValue(value, result);
+    }
+  }
+
+  /**
+   * Appends the canonical form of an element value, or of a value inside an array, to a builder.
+   * Unlike {@link #appendValue(Expression, StringBuilder)}, single-element arrays are kept.
+   *
+   * @param value an element value or a value inside an array
+   * @param result the builder to append to
+   */
+  private static void appendNestedValue(Expression value, StringBuilder result) {
+    if (value instanceof ArrayInitializerExpr) {
+      NodeList<Expression> values = ((ArrayInitializerExpr) value).getValues();
+      result.append('{');
+      for (int i = 0; i < values.size(); i++) {
+        if (i != 0) {
+          result.append(',');
+        }
+        appendNestedValue(values.get(i), result);
+      }
+      result.append('}');
+    } else if (value instanceof AnnotationExpr) {
+      appendAnnotation((AnnotationExpr) value, result);
+    } else {
+      result.append(value);
+    }
+  }
+}
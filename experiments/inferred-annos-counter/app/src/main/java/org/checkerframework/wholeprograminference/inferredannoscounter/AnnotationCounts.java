@@ -0,0 +1,222 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The result of running the inferred annos counter on one human-written file: for each type of
+ * annotation in that file, how many of them there are and how many of them were inferred by WPI.
+ * Instances are immutable, so they can be freely shared between threads.
+ */
+public final class AnnotationCounts {
+
+  /** The counts for a single type of annotation. Instances are immutable. */
+  public static final class Count {
+
+    /** The annotation, in the simple format and with the {@literal @} (e.g., "@Owning"). */
+    private final String annotation;
+
+    /** The number of annotations of this type in the human-written file. */
+    private final int found;
+
+    /** The number of those annotations that are in the scope of some SuppressWarnings. */
+    private final int ignored;
+
+    /** The number of those annotations that are in at least one of the .ajava files. */
+    private final int matched;
+
+    /**
+     * For the checker of each .ajava file, the number of those annotations that are in at least one
+     * of the .ajava files of that checker.
+     */
+    private final Map<String, Integer> matchedBy;
+
+    /**
+     * Creates a new Count, without attribution to the checkers.
+     *
+     * @param annotation the annotation, in the simple format
+     * @param found the number of annotations of this type in the human-written file
+     * @param ignored the number of those annotations that are in the scope of some SuppressWarnings
+     * @param matched the number of those annotations that are in at least one of the .ajava files
+     */
+    Count(String annotation, int found, int ignored, int matched) {
+      this(annotation, found, ignored, matched, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a new Count.
+     *
+     * @param annotation the annotation, in the simple format
+     * @param found the number of annotations of this type in the human-written file
+     * @param ignored the number of those annotations that are in the scope of some SuppressWarnings
+     * @param matched the number of those annotations that are in at least one of the .ajava files
+     * @param matchedBy for the checker of each .ajava file, in order, the number of those
+     *     annotations that are in at least one of the .ajava files of that checker
+     */
+    Count(
+        String annotation, int found, int ignored, int matched, Map<String, Integer> matchedBy) {
+      this.annotation = annotation;
+      this.found = found;
+      this.ignored = ignored;
+      this.matched = matched;
+      this.matchedBy = Collections.unmodifiableMap(new LinkedHashMap<>(matchedBy));
+    }
+
+    /**
+     * Returns the annotation, in the simple format and with the {@literal @} (e.g., "@Owning").
+     *
+     * @return the annotation
+     */
+    public String getAnnotation() {
+      return annotation;
+    }
+
+    /**
+     * Returns the number of annotations of this type that are counted: those in the human-written
+     * file, except for the ones in the scope of some SuppressWarnings.
+     *
+     * @return the number of annotations of this type that are counted
+     */
+    public int getTotal() {
+      return found - ignored;
+    }
+
+    /**
+     * Returns the number of annotations of this type in the human-written file, including the ones
+     * in the scope of some SuppressWarnings.
+     *
+     * @return the number of annotations of this type in the human-written file
+     */
+    int getFound() {
+      return found;
+    }
+
+    /**
+     * Returns the number of annotations of this type that are in the scope of some
+     * SuppressWarnings, and therefore not counted.
+     *
+     * @return the number of ignored annotations of this type
+     */
+    public int getIgnored() {
+      return ignored;
+    }
+
+    /**
+     * Returns the number of annotations of this type that are in at least one of the .ajava files.
+     *
+     * @return the number of inferred annotations of this type
+     */
+    public int getMatched() {
+      return matched;
+    }
+
+    /**
+     * Returns, for the checker of each .ajava file, the number of annotations of this type that are
+     * in at least one of the .ajava files of that checker. An annotation can be inferred by several
+     * checkers, so the sum of the values can be more than {@link #getMatched()}, which is the
+     * number of annotations inferred by the union of the checkers. The checkers are named as in
+     * {@link InferredAnnosCounter#checkerName(java.nio.file.Path)}.
+     *
+     * @return an unmodifiable map from the name of each checker to its number of inferred
+     *     annotations of this type, in the order of the .ajava files
+     */
+    public Map<String, Integer> getMatchedBy() {
+      return matchedBy;
+    }
+
+    @Override
+    public String toString() {
+      return annotation + " got " + matched + "/" + getTotal();
+    }
+  }
+
+  /** The counts, keyed by annotation. */
+  private final Map<String, Count> counts;
+
+  /**
+   * Whether the counter had to find the scopes of SuppressWarnings annotations in the human-written
+   * file. That is only needed if the file contains some.
+   */
+  private final boolean suppressionAnalyzed;
+
+  /** The annotations that were not inferred, in the order they are in the human-written file. */
+  private final List<MissedAnnotation> missed;
+
+  /**
+   * Creates a new AnnotationCounts, without the annotations that were not inferred.
+   *
+   * @param counts the counts for each type of annotation, in the order they should be reported
+   * @param suppressionAnalyzed whether the scopes of SuppressWarnings annotations in the
+   *     human-written file were examined
+   */
+  AnnotationCounts(List<Count> counts, boolean suppressionAnalyzed) {
+    this(counts, suppressionAnalyzed, Collections.emptyList());
+  }
+
+  /**
+   * Creates a new AnnotationCounts.
+   *
+   * @param counts the counts for each type of annotation, in the order they should be reported
+   * @param suppressionAnalyzed whether the scopes of SuppressWarnings annotations in the
+   *     human-written file were examined
+   * @param missed the annotations that were not inferred, in the order they are in the
+   *     human-written file
+   */
+  AnnotationCounts(List<Count> counts, boolean suppressionAnalyzed, List<MissedAnnotation> missed) {
+    Map<String, Count> map = new LinkedHashMap<>();
+    for (Count count : counts) {
+      map.put(count.getAnnotation(), count);
+    }
+    this.counts = Collections.unmodifiableMap(map);
+    this.suppressionAnalyzed = suppressionAnalyzed;
+    this.missed = Collections.unmodifiableList(new ArrayList<>(missed));
+  }
+
+  /**
+   * Returns the counts for every type of annotation in the human-written file, including the ones
+   * whose annotations are all ignored.
+   *
+   * @return an unmodifiable list of the counts
+   */
+  public List<Count> getCounts() {
+    return Collections.unmodifiableList(new ArrayList<>(counts.values()));
+  }
+
+  /**
+   * Returns the counts for the given type of annotation.
+   *
+   * @param annotation an annotation, in the simple format and with the {@literal @} (e.g.,
+   *     "@Owning")
+   * @return the counts for that annotation, or null if there is no such annotation in the
+   *     human-written file
+   */
+  public @Nullable Count get(String annotation) {
+    return counts.get(annotation);
+  }
+
+  /**
+   * Returns true if the counter had to find the scopes of SuppressWarnings annotations in the
+   * human-written file, and false if it took the fast path because the file does not contain any
+   * SuppressWarnings annotation (or any tracked annotation at all).
+   *
+   * @return true if the SuppressWarnings analysis ran for the file
+   */
+  public boolean isSuppressionAnalyzed() {
+    return suppressionAnalyzed;
+  }
+
+  /**
+   * Returns the tracked annotations of the human-written file that are not in any of the .ajava
+   * files, except for the ones in the scope of some SuppressWarnings.
+   *
+   * @return an unmodifiable list of the annotations that were not inferred, in the order they are
+   *     in the human-written file
+   */
+  public List<MissedAnnotation> getMissed() {
+    return missed;
+  }
+}
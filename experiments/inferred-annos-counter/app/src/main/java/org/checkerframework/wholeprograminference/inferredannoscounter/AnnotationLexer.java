@@ -0,0 +1,325 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.index.qual.IndexFor;
+import org.checkerframework.checker.index.qual.IndexOrHigh;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Finds the annotations in the text of a Java file in a single left-to-right pass. The lexer keeps
+ * track of whether it is inside a string literal, a text block, a character literal, or a comment,
+ * so an {@literal @} in any of those is never mistaken for an annotation, and the parentheses in
+ * the arguments of an annotation are matched without being confused by parentheses in string
+ * arguments.
+ *
+ * <p>The diff-based algorithm of {@link InferredAnnosCounter} uses the lexer twice: to put each
+ * annotation of a file on a line of its own before diffing, and to find the annotations in the
+ * lines of each delta afterwards.
+ */
+final class AnnotationLexer {
+
+  /** Do not instantiate. */
+  private AnnotationLexer() {
+    throw new Error("Do not instantiate AnnotationLexer");
+  }
+
+  /** An annotation found by the lexer. */
+  static final class Token {
+
+    /** The index of the {@literal @} of the annotation in the lexed text. */
+    final int start;
+
+    /** The index just after the end of the annotation (including its arguments, if any). */
+    final int end;
+
+    /** The name of the annotation, as written (e.g., "Nullable" or "java.lang.Deprecated"). */
+    final String name;
+
+    /**
+     * The arguments of the annotation, including the enclosing parentheses, or null if the
+     * annotation has no parenthesized arguments.
+     */
+    final @Nullable String arguments;
+
+    /**
+     * The index of the line of the annotation in the lines of {@link #splitLines(String, List)}, or
+     * -1 if the text was not split into lines.
+     */
+    final int line;
+
+    /**
+     * Creates a new Token.
+     *
+     * @param start the index of the {@literal @} of the annotation
+     * @param end the index just after the end of the annotation
+     * @param name the name of the annotation
+     * @param arguments the arguments of the annotation, including the parentheses, or null
+     * @param line the index of the line of the annotation, or -1
+     */
+    Token(int start, int end, String name, @Nullable String arguments, int line) {
+      this.start = start;
+      this.end = end;
+      this.name = name;
+      this.arguments = arguments;
+      this.line = line;
+    }
+
+    /**
+     * Returns the annotation as written, with the {@literal @} and the arguments.
+     *
+     * @return the text of the annotation
+     */
+    String text() {
+      return arguments == null ? "@" + name : "@" + name + arguments;
+    }
+  }
+
+  /**
+   * Returns the annotations in the given text, in order.
+   *
+   * @param text the text of a Java file, or a part of it that does not start inside a literal or a
+   *     comment
+   * @return the annotations in text
+   */
+  static List<Token> lex(String text) {
+    return lex(text, null);
+  }
+
+  /**
+   * Splits the text of a Java file into lines, putting each annotation on a line of its own. The
+   * text before and after an annotation on the same line goes into separate lines, and an
+   * annotation whose arguments span several lines is joined into one line. The diff algorithm then
+   * sees each annotation as a separate element.
+   *
+   * @param text the text of a Java file
+   * @return the lines, which may have leading or trailing whitespace and may be blank
+   */
+  static List<String> splitLines(String text) {
+    List<String> lines = new ArrayList<>();
+    lex(text, lines);
+    return lines;
+  }
+
+  /**
+   * Splits the text of a Java file into lines as described in {@link #splitLines(String)}, and
+   * finds the annotations in it, in the same pass. The {@link Token#line} of each annotation is the
+   * index of its line in the result.
+   *
+   * @param text the text of a Java file
+   * @param tokens the list to add the annotations in text to, in order
+   * @return the lines, which may have leading or trailing whitespace and may be blank
+   */
+  static List<String> splitLines(String text, List<Token> tokens) {
+    List<String> lines = new ArrayList<>();
+    tokens.addAll(lex(text, lines));
+    return lines;
+  }
+
+  /**
+   * Finds the annotations in the given text and, if lines is not null, splits the text into lines
+   * as described in {@link #splitLines(String)}, in the same pass.
+   *
+   * @param text the text to lex
+   * @param lines the list to add the lines of text to, or null if they are not needed
+   * @return the annotations in text
+   */
+  private static List<Token> lex(String text, @Nullable List<String> lines) {
+    List<Token> tokens = new ArrayList<>();
+    int length = text.length();
+    // the start of the text that has not been added to lines yet
+    int position = 0;
+    int i = 0;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\'') {
+        i = skipLiteral(text, i);
+      } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '/') {
+        int newline = text.indexOf('\n', i);
+        i = newline == -1 ? length : newline;
+      } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+        int close = text.indexOf("*/", i + 2);
+        i = close == -1 ? length : close + 2;
+      } else if (c == '@'
+          && i + 1 < length
+          && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+        int nameEnd = skipName(text, i + 1);
+        String name = text.substring(i + 1, nameEnd);
+        if (name.equals("interface")) {
+          // the keyword of an annotation type declaration, not an annotation
+          i = nameEnd;
+          continue;
+        }
+        int end = nameEnd;
+        String arguments = null;
+        if (nameEnd < length && text.charAt(nameEnd) == '(') {
+          end = skipArguments(text, nameEnd);
+          arguments = text.substring(nameEnd, end);
+        }
+        if (lines != null) {
+          addLines(text.substring(position, i), lines);
+          tokens.add(new Token(i, end, name, arguments, lines.size()));
+          // The same way google-java-format breaks long annotations, the arguments of an
+          // annotation can be split over several lines. Joining them without whitespace is also
+          // easier for the diff algorithm.
+          lines.add(joinLines(text, i, end));
+          position = end;
+        } else {
+          tokens.add(new Token(i, end, name, arguments, -1));
+        }
+        i = end;
+      } else {
+        i++;
+      }
+    }
+    if (lines != null) {
+      addLines(text.substring(position), lines);
+    }
+    return tokens;
+  }
+
+  /**
+   * Returns the index just after the name of an annotation: a sequence of identifiers separated by
+   * dots.
+   *
+   * @param text the text being lexed
+   * @param start the index of the first character of the name
+   * @return the index just after the name
+   */
+  private static @IndexOrHigh("#1") int skipName(String text, @IndexOrHigh("#1") int start) {
+    int length = text.length();
+    int i = start;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (Character.isJavaIdentifierPart(c)
+          || (c == '.' && i + 1 < length && Character.isJavaIdentifierStart(text.charAt(i + 1)))) {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  /**
+   * Returns the index just after the parenthesized arguments of an annotation. Parentheses inside
+   * literals are not counted.
+   *
+   * @param text the text being lexed
+   * @param start the index of the opening parenthesis
+   * @return the index just after the matching closing parenthesis, or the length of text if there
+   *     is none
+   */
+  private static @IndexOrHigh("#1") int skipArguments(String text, @IndexFor("#1") int start) {
+    int length = text.length();
+    int depth = 0;
+    int i = start;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (c == '"' || c == '\'') {
+        i = skipLiteral(text, i);
+      } else {
+        if (c == '(') {
+          depth++;
+        } else if (c == ')') {
+          depth--;
+          if (depth == 0) {
+            return i + 1;
+          }
+        }
+        i++;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Returns the index just after the string literal, text block, or character literal that starts
+   * at the given index. An unterminated literal ends at the end of the line (or, for a text block,
+   * at the end of the text).
+   *
+   * @param text the text being lexed
+   * @param start the index of the opening quote
+   * @return the index just after the closing quote
+   */
+  private static @IndexOrHigh("#1") int skipLiteral(String text, @IndexFor("#1") int start) {
+    int length = text.length();
+    char quote = text.charAt(start);
+    boolean textBlock = quote == '"' && text.startsWith("\"\"\"", start);
+    int i = textBlock ? start + 3 : start + 1;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (textBlock) {
+        if (text.startsWith("\"\"\"", i)) {
+          return Math.min(i + 3, length);
+        }
+        i++;
+      } else if (c == quote) {
+        return i + 1;
+      } else if (c == '\n') {
+        return i;
+      } else {
+        i++;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Returns a part of the given text with every run of whitespace that contains a line break
+   * removed. Other whitespace is kept.
+   *
+   * @param text the text being lexed
+   * @param start the start of the part, inclusive
+   * @param end the end of the part, exclusive
+   * @return the part of text between start and end, on a single line
+   */
+  private static String joinLines(
+      String text, @IndexOrHigh("#1") int start, @IndexOrHigh("#1") int end) {
+    int newline = text.indexOf('\n', start);
+    if (newline == -1 || newline >= end) {
+      return text.substring(start, end);
+    }
+    StringBuilder result = new StringBuilder(end - start);
+    int i = start;
+    while (i < end) {
+      char c = text.charAt(i);
+      if (!InferredAnnosCounter.isRegexWhitespace(c)) {
+        result.append(c);
+        i++;
+        continue;
+      }
+      int whitespaceEnd = i;
+      boolean hasLineBreak = false;
+      while (whitespaceEnd < end
+          && InferredAnnosCounter.isRegexWhitespace(text.charAt(whitespaceEnd))) {
+        hasLineBreak |= text.charAt(whitespaceEnd) == '\n';
+        whitespaceEnd++;
+      }
+      if (!hasLineBreak) {
+        result.append(text, i, whitespaceEnd);
+      }
+      i = whitespaceEnd;
+    }
+    return result.toString();
+  }
+
+  /**
+   * Adds each line of a piece of text to a list.
+   *
+   * @param text a piece of text
+   * @param lines the list to add the lines to
+   */
+  private static void addLines(String text, List<String> lines) {
+    int start = 0;
+    int newline = text.indexOf('\n');
+    while (newline != -1) {
+      lines.add(text.substring(start, newline));
+      start = newline + 1;
+      newline = text.indexOf('\n', start);
+    }
+    lines.add(text.substring(start));
+  }
+}
@@ -0,0 +1,430 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.PackageDeclaration;
+import com.github.javaparser.ast.body.AnnotationMemberDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.ReceiverParameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithParameters;
+import com.github.javaparser.ast.nodeTypes.NodeWithVariables;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.IntersectionType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.TypeParameter;
+import com.github.javaparser.ast.type.UnionType;
+import com.github.javaparser.ast.type.WildcardType;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An alternative to the line-based diff of {@link InferredAnnosCounter}, selected with {@link
+ * InferredAnnosCounter.Matcher#AST}. Instead of diffing the text of the files, it keys every
+ * annotation by its structural site in the AST: the enclosing types and members, the parameter
+ * index or variable names, and the position inside the annotated type. An annotation of the
+ * human-written file is inferred if an annotation with the same key and the same arguments is in at
+ * least one of the .ajava files. Matching the keys is a hash join, so it takes linear time and does
+ * not depend on the formatting of the files.
+ *
+ * <p>An annotation in declaration position and a type annotation on the element type of the
+ * declared type get the same key, because Java treats them the same way: for example,
+ * {@literal @}Nullable String f and java.lang.{@literal @}Nullable String f.
+ */
+final class AnnotationSiteMatcher {
+
+  /** Do not instantiate. */
+  private AnnotationSiteMatcher() {
+    throw new Error("Do not instantiate AnnotationSiteMatcher");
+  }
+
+  /**
+   * Counts the annotations of a human-written file that are also in at least one of the .ajava
+   * files, at the same site.
+   *
+   * <p>All the .ajava files are matched in a single pass over the human-written file. An annotation
+   * that occurs k times at the same site can be matched by an .ajava file that contains it at least
+   * k times, so the only thing that matters about each .ajava file is, for each key, its number of
+   * occurrences. The work is therefore linear in the total size of the files.
+   *
+   * @param original the human-written file
+   * @param ajavas the corresponding .ajava files. Each of them is parsed once and then released.
+   * @param registry the tracked annotations
+   * @param listOfAnnoToIgnore the number of annotations of each type that are within the scope of
+   *     some SuppressWarnings
+   * @param suppressionAnalyzed whether the scopes of SuppressWarnings annotations were examined to
+   *     compute listOfAnnoToIgnore
+   * @return the counts for each type of annotation in the human-written file
+   */
+  static AnnotationCounts count(
+      ParsedFile original,
+      List<Path> ajavas,
+      QualifierRegistry registry,
+      Map<String, Integer> listOfAnnoToIgnore,
+      boolean suppressionAnalyzed) {
+    // for each .ajava file, the number of times each key occurs in it
+    List<Map<String, Integer>> occurrences = new ArrayList<>(ajavas.size());
+    for (Path ajava : ajavas) {
+      Map<String, Integer> ajavaOccurrences = new HashMap<>();
+      for (AnnotationExpr anno : ParsedFile.parse(ajava).getAnnotations()) {
+        ajavaOccurrences.merge(key(anno), 1, Integer::sum);
+      }
+      occurrences.add(ajavaOccurrences);
+    }
+
+    // the tracked annotations of the human-written file, keyed by their index, and the .ajava files
+    // that miss each of them
+    List<AnnotationExpr> sites = new ArrayList<>();
+    AnnotationTally tally =
+        new AnnotationTally(
+            registry, original.getAnnotations().size(), InferredAnnosCounter.checkerNames(ajavas));
+    // for each key, the number of times it has occurred so far in the human-written file
+    Map<String, Integer> seen = new HashMap<>();
+    for (AnnotationExpr anno : original.getAnnotations()) {
+      int qualifierId = registry.getId(InferredAnnosCounter.trimParen(annotationType(anno)));
+      if (qualifierId == -1) {
+        continue;
+      }
+      String key = key(anno);
+      int occurrence = seen.merge(key, 1, Integer::sum);
+      int site = sites.size();
+      sites.add(anno);
+      tally.addAnnotationAt(site, qualifierId);
+      for (int ajava = 0; ajava < occurrences.size(); ajava++) {
+        if (occurrence > occurrences.get(ajava).getOrDefault(key, 0)) {
+          tally.addMissAt(site, ajava);
+        }
+      }
+    }
+    tally.resolveMisses();
+    List<MissedAnnotation> missed = new ArrayList<>();
+    for (int site : tally.getMissedLines()) {
+      AnnotationExpr anno = sites.get(site);
+      if (!WarningSuppression.isKept(anno, registry, suppressionAnalyzed)) {
+        missed.add(
+            new MissedAnnotation(
+                InferredAnnosCounter.trimParen(annotationType(anno)),
+                anno.getBegin().map(position -> position.line).orElse(0),
+                anno.getBegin().map(position -> position.column).orElse(0),
+                site(anno)));
+      }
+    }
+    return tally.toCounts(listOfAnnoToIgnore, suppressionAnalyzed, missed);
+  }
+
+  /**
+   * Returns the multiset of the keys (see {@link #key(AnnotationExpr)}) of the tracked annotations
+   * of a file. Only the tracked annotations are keyed, since computing a key is much more expensive
+   * than looking up the type of an annotation.
+   *
+   * @param file a human-written file or an .ajava file
+   * @param registry the tracked annotations
+   * @return for each key, the number of tracked annotations of file with that key
+   */
+  static Map<String, Integer> trackedKeys(ParsedFile file, QualifierRegistry registry) {
+    Map<String, Integer> result = new HashMap<>();
+    for (AnnotationExpr anno : file.getAnnotations()) {
+      if (registry.isTracked(InferredAnnosCounter.trimParen(annotationType(anno)))) {
+        result.merge(key(anno), 1, Integer::sum);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if one multiset of keys contains another: that is, if every key occurs in the
+   * first multiset at least as many times as in the second.
+   *
+   * @param container the keys of the tracked annotations of an .ajava file
+   * @param contained the keys of the tracked annotations of the human-written file
+   * @return true if container contains contained
+   */
+  static boolean containsAll(Map<String, Integer> container, Map<String, Integer> contained) {
+    for (Map.Entry<String, Integer> e : contained.entrySet()) {
+      if (container.getOrDefault(e.getKey(), 0) < e.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the type of an annotation in the simple format, as it is stored in the {@link
+   * QualifierRegistry} (e.g., "{@literal @}Pure").
+   *
+   * @param anno an annotation
+   * @return the type of the annotation
+   */
+  private static String annotationType(AnnotationExpr anno) {
+    return InferredAnnosCounter.extractCheckerPackage("@" + anno.getNameAsString());
+  }
+
+  /**
+   * Returns the key of an annotation: its site, followed by the annotation and its arguments. The
+   * annotation is in the same canonical form that the diff-based algorithm uses, so that, for
+   * example, {@literal @}EnsuresNonNull("tz1") and {@literal @}EnsuresNonNull({"tz1"}) are equal.
+   *
+   * @param anno an annotation
+   * @return the key of the annotation
+   */
+  static String key(AnnotationExpr anno) {
+    return site(anno) + " " + AnnotationCanonicalizer.canonicalize(anno);
+  }
+
+  /**
+   * Returns a description of the site of an annotation, which is the same in every file that has
+   * the same declarations, no matter how the file is formatted.
+   *
+   * @param anno an annotation
+   * @return the site of the annotation
+   */
+  static String site(AnnotationExpr anno) {
+    // the path from the innermost enclosing declaration to the annotation, in reverse order
+    List<String> typePath = new ArrayList<>();
+    Node child = anno;
+    Optional<Node> parent = anno.getParentNode();
+    if (!parent.isPresent()) {
+      return "?";
+    }
+    Node annotated = parent.get();
+    while (parent.isPresent() && describeSite(parent.get(), child) == null) {
+      typePath.add(describeRole(parent.get(), child));
+      child = parent.get();
+      parent = child.getParentNode();
+    }
+    if (!parent.isPresent()) {
+      return "?";
+    }
+    Node declaration = parent.get();
+    Collections.reverse(typePath);
+    String position;
+    if (typePath.isEmpty() || isElementTypeOf(annotated, declaration)) {
+      position = "decl";
+    } else {
+      position = String.join("/", typePath);
+    }
+    if (declaration instanceof Parameter
+        && containsNode(((Parameter) declaration).getVarArgsAnnotations(), anno)) {
+      position = "varargs";
+    }
+
+    List<String> sites = new ArrayList<>();
+    Node site = declaration;
+    Node siteChild = child;
+    while (true) {
+      String description = describeSite(site, siteChild);
+      if (description != null) {
+        sites.add(description);
+      }
+      Optional<Node> next = site.getParentNode();
+      if (!next.isPresent()) {
+        break;
+      }
+      siteChild = site;
+      site = next.get();
+    }
+    Collections.reverse(sites);
+    return String.join(" > ", sites) + " : " + position;
+  }
+
+  /**
+   * Returns a description of a node if it is a declaration that annotations can be attached to, and
+   * null otherwise.
+   *
+   * @param node a node
+   * @param child the child of node on the path to the annotation
+   * @return a description of the declaration, or null if node is not a declaration
+   */
+  private static @Nullable String describeSite(Node node, Node child) {
+    if (node instanceof PackageDeclaration) {
+      return "package";
+    } else if (node instanceof TypeDeclaration) {
+      return "type " + ((TypeDeclaration<?>) node).getNameAsString();
+    } else if (node instanceof EnumConstantDeclaration) {
+      return "constant " + ((EnumConstantDeclaration) node).getNameAsString();
+    } else if (node instanceof CallableDeclaration) {
+      return "method " + ((CallableDeclaration<?>) node).getSignature().asString();
+    } else if (node instanceof AnnotationMemberDeclaration) {
+      return "member " + ((AnnotationMemberDeclaration) node).getNameAsString();
+    } else if (node instanceof Parameter) {
+      Optional<Node> owner = node.getParentNode();
+      if (owner.isPresent() && owner.get() instanceof NodeWithParameters) {
+        return "param " + indexOf(((NodeWithParameters<?>) owner.get()).getParameters(), node);
+      }
+      return "param " + ((Parameter) node).getNameAsString();
+    } else if (node instanceof ReceiverParameter) {
+      return "receiver";
+    } else if (node instanceof FieldDeclaration) {
+      return "field " + variableNames((FieldDeclaration) node);
+    } else if (node instanceof VariableDeclarationExpr) {
+      return "local " + variableNames((VariableDeclarationExpr) node);
+    } else if (node instanceof TypeParameter) {
+      return "typeparam " + ((TypeParameter) node).getNameAsString();
+    } else if (node instanceof ObjectCreationExpr
+        && ((ObjectCreationExpr) node).getAnonymousClassBody().isPresent()
+        && child != ((ObjectCreationExpr) node).getType()) {
+      return "new " + ((ObjectCreationExpr) node).getType().getNameAsString();
+    } else if (node instanceof LambdaExpr) {
+      return "lambda";
+    }
+    return null;
+  }
+
+  /**
+   * Returns a description of the role of a node within its parent, which is not a declaration.
+   * Inside types, the description is structural (e.g., the index of a type argument) rather than
+   * textual, so that annotations on other parts of the type do not change it.
+   *
+   * @param parent a node that is not a declaration
+   * @param child a child of parent
+   * @return the role of child within parent
+   */
+  private static String describeRole(Node parent, Node child) {
+    if (parent instanceof ClassOrInterfaceType) {
+      ClassOrInterfaceType type = (ClassOrInterfaceType) parent;
+      if (type.getScope().isPresent() && type.getScope().get() == child) {
+        return "scope";
+      }
+      if (type.getTypeArguments().isPresent()) {
+        int index = indexOf(type.getTypeArguments().get(), child);
+        if (index != -1) {
+          return "arg " + index;
+        }
+      }
+      return "class";
+    } else if (parent instanceof ArrayType) {
+      return child == ((ArrayType) parent).getComponentType() ? "[]" : "array";
+    } else if (parent instanceof WildcardType) {
+      WildcardType wildcard = (WildcardType) parent;
+      if (wildcard.getExtendedType().isPresent() && wildcard.getExtendedType().get() == child) {
+        return "extends";
+      }
+      return "super";
+    } else if (parent instanceof UnionType) {
+      return "alt " + indexOf(((UnionType) parent).getElements(), child);
+    } else if (parent instanceof IntersectionType) {
+      return "bound " + indexOf(((IntersectionType) parent).getElements(), child);
+    }
+    if (child instanceof Type) {
+      return typeRole(parent, (Type) child);
+    }
+    return parent.getClass().getSimpleName();
+  }
+
+  /**
+   * Returns a description of the role of a type within a declaration or an expression.
+   *
+   * @param owner the node that contains the type
+   * @param type a type
+   * @return the role of the type
+   */
+  private static String typeRole(Node owner, Type type) {
+    if (owner instanceof ClassOrInterfaceDeclaration) {
+      ClassOrInterfaceDeclaration decl = (ClassOrInterfaceDeclaration) owner;
+      int extended = indexOf(decl.getExtendedTypes(), type);
+      if (extended != -1) {
+        return "extends " + extended;
+      }
+      int implemented = indexOf(decl.getImplementedTypes(), type);
+      if (implemented != -1) {
+        return "implements " + implemented;
+      }
+    } else if (owner instanceof CallableDeclaration) {
+      int thrown = indexOf(((CallableDeclaration<?>) owner).getThrownExceptions(), type);
+      if (thrown != -1) {
+        return "throws " + thrown;
+      }
+    } else if (owner instanceof TypeParameter) {
+      return "bound " + indexOf(((TypeParameter) owner).getTypeBound(), type);
+    }
+    return "type " + owner.getClass().getSimpleName();
+  }
+
+  /**
+   * Returns true if node is the element type of the type declared by declaration: that is, the type
+   * without any array dimensions. A type annotation on that type is equivalent to an annotation in
+   * declaration position.
+   *
+   * @param node a node
+   * @param declaration a declaration
+   * @return true if node is the element type of the declared type
+   */
+  private static boolean isElementTypeOf(Node node, Node declaration) {
+    Type declaredType;
+    if (declaration instanceof MethodDeclaration) {
+      declaredType = ((MethodDeclaration) declaration).getType();
+    } else if (declaration instanceof Parameter) {
+      declaredType = ((Parameter) declaration).getType();
+    } else if (declaration instanceof AnnotationMemberDeclaration) {
+      declaredType = ((AnnotationMemberDeclaration) declaration).getType();
+    } else if (declaration instanceof NodeWithVariables) {
+      NodeWithVariables<?> withVariables = (NodeWithVariables<?>) declaration;
+      if (withVariables.getVariables().isEmpty()) {
+        return false;
+      }
+      declaredType = withVariables.getVariable(0).getType();
+    } else {
+      return false;
+    }
+    return node == declaredType.getElementType();
+  }
+
+  /**
+   * Returns the names of the variables declared by a field or a local variable declaration.
+   *
+   * @param declaration a field or a local variable declaration
+   * @return the names of the variables, separated by commas
+   */
+  private static String variableNames(NodeWithVariables<?> declaration) {
+    List<String> names = new ArrayList<>();
+    for (VariableDeclarator variable : declaration.getVariables()) {
+      names.add(variable.getNameAsString());
+    }
+    return String.join(",", names);
+  }
+
+  /**
+   * Returns the index of a node in a list, comparing by identity. Nodes are compared structurally
+   * by equals, which would conflate identical siblings.
+   *
+   * @param list a list of nodes
+   * @param node a node
+   * @return the index of node in list, or -1 if it is not in the list
+   */
+  private static int indexOf(NodeList<? extends Node> list, Node node) {
+    for (int i = 0; i < list.size(); i++) {
+      if (list.get(i) == node) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the list contains the node, comparing by identity.
+   *
+   * @param list a list of nodes
+   * @param node a node
+   * @return true if node is in list
+   */
+  private static boolean containsNode(NodeList<? extends Node> list, Node node) {
+    return indexOf(list, node) != -1;
+  }
+}
@@ -0,0 +1,255 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bookkeeping of the counter for one human-written file: for each tracked annotation of the
+ * file, where it is and which .ajava files miss it, and for each type of annotation, how many there
+ * are and how many were inferred, by any checker and by each checker. Everything is kept in arrays
+ * indexed by original line and by qualifier id (see {@link QualifierRegistry}), so that no string
+ * keys or boxed integers are created per annotation. The .ajava files that miss an annotation are a
+ * bitset, one bit per .ajava file, so attributing the annotations to the checkers takes the same
+ * pass over the files as counting them.
+ *
+ * <p>The number of annotations of each type is updated as the annotations are recorded. Instances
+ * are not thread-safe; each file has its own.
+ */
+final class AnnotationTally {
+
+  /** The tracked annotations. */
+  private final QualifierRegistry registry;
+
+  /**
+   * For each line of the original file, the id of the tracked annotation on it, or -1 if the line
+   * is not a tracked annotation.
+   */
+  private int[] qualifierAtLine;
+
+  /**
+   * For each line of the original file, the bitset of the .ajava files that miss its annotation:
+   * bit k of word {@code line * wordsPerLine + k / 64} is set if the .ajava file k misses it.
+   */
+  private long[] missesAtLine;
+
+  /** The number of words of {@link #missesAtLine} per line. */
+  private final int wordsPerLine;
+
+  /** The number of lines recorded so far; the lines after it are not tracked annotations. */
+  private int lineCount;
+
+  /** For each qualifier id, the number of annotations of that type in the original file. */
+  private final int[] found;
+
+  /** For each qualifier id, the number of annotations of that type inferred by WPI. */
+  private final int[] matched;
+
+  /** The names of the checkers of the .ajava files, without duplicates, in order. */
+  private final List<String> checkers;
+
+  /** For each .ajava file, the index in {@link #checkers} of its checker. */
+  private final int[] checkerOfAjava;
+
+  /**
+   * For each index in {@link #checkers} and each qualifier id, the number of annotations of that
+   * type in at least one .ajava file of that checker.
+   */
+  private final int[][] matchedBy;
+
+  /** The ids of the qualifiers that occur in the original file, in order of first occurrence. */
+  private final int[] order;
+
+  /** The number of valid elements of order. */
+  private int orderSize;
+
+  /**
+   * The lines of the annotations that no .ajava file infers, in increasing order, as computed by
+   * {@link #resolveMisses()}.
+   */
+  private int[] missedLines = new int[0];
+
+  /**
+   * Creates a new, empty AnnotationTally.
+   *
+   * @param registry the tracked annotations
+   * @param expectedLines the expected number of lines of the original file. More lines can be
+   *     recorded, at the cost of growing the arrays.
+   * @param ajavaCheckers the name of the checker of each .ajava file (see {@link
+   *     InferredAnnosCounter#checkerName(java.nio.file.Path)}), in the order of the .ajava files
+   */
+  AnnotationTally(QualifierRegistry registry, int expectedLines, List<String> ajavaCheckers) {
+    this.registry = registry;
+    int capacity = Math.max(expectedLines, 16);
+    this.qualifierAtLine = new int[capacity];
+    Arrays.fill(qualifierAtLine, -1);
+    this.wordsPerLine = (ajavaCheckers.size() + 63) / 64;
+    this.missesAtLine = new long[capacity * wordsPerLine];
+    this.found = new int[registry.size()];
+    this.matched = new int[registry.size()];
+    this.order = new int[registry.size()];
+    this.checkers = new ArrayList<>();
+    this.checkerOfAjava = new int[ajavaCheckers.size()];
+    for (int k = 0; k < ajavaCheckers.size(); k++) {
+      int index = checkers.indexOf(ajavaCheckers.get(k));
+      if (index == -1) {
+        index = checkers.size();
+        checkers.add(ajavaCheckers.get(k));
+      }
+      checkerOfAjava[k] = index;
+    }
+    this.matchedBy = new int[checkers.size()][registry.size()];
+  }
+
+  /**
+   * Records a tracked annotation of the original file, which is not yet known to be inferred.
+   *
+   * @param qualifierId the id of the annotation type
+   */
+  private void addAnnotation(int qualifierId) {
+    if (found[qualifierId] == 0) {
+      order[orderSize] = qualifierId;
+      orderSize++;
+    }
+    found[qualifierId]++;
+  }
+
+  /**
+   * Records a tracked annotation that is alone on a line of the normalized original file.
+   *
+   * @param line the index of the line in the normalized original file
+   * @param qualifierId the id of the annotation type
+   */
+  void addAnnotationAt(int line, int qualifierId) {
+    if (line >= qualifierAtLine.length) {
+      int capacity = Math.max(line + 1, qualifierAtLine.length * 2);
+      int oldCapacity = qualifierAtLine.length;
+      qualifierAtLine = Arrays.copyOf(qualifierAtLine, capacity);
+      Arrays.fill(qualifierAtLine, oldCapacity, capacity, -1);
+      missesAtLine = Arrays.copyOf(missesAtLine, capacity * wordsPerLine);
+    }
+    qualifierAtLine[line] = qualifierId;
+    lineCount = Math.max(lineCount, line + 1);
+    addAnnotation(qualifierId);
+  }
+
+  /**
+   * Returns true if the given line of the normalized original file is a tracked annotation.
+   *
+   * @param line the index of a line in the normalized original file
+   * @return true if the line was recorded with {@link #addAnnotationAt(int, int)}
+   */
+  boolean isAnnotationAt(int line) {
+    return line >= 0 && line < lineCount && qualifierAtLine[line] != -1;
+  }
+
+  /**
+   * Records that an .ajava file misses the annotation on the given line. Recording the same miss
+   * twice has no effect.
+   *
+   * @param line the index of a line of the normalized original file that is a tracked annotation
+   * @param ajava the index of the .ajava file
+   */
+  void addMissAt(int line, int ajava) {
+    missesAtLine[line * wordsPerLine + (ajava >>> 6)] |= 1L << ajava;
+  }
+
+  /**
+   * Marks the annotations recorded with {@link #addAnnotationAt(int, int)} as inferred if at least
+   * one of the .ajava files does not miss them, and as inferred by a checker if at least one of the
+   * .ajava files of that checker does not miss them. An .ajava file for which no miss was recorded,
+   * such as one that is known to contain all the annotations of the original file, infers them all.
+   */
+  void resolveMisses() {
+    boolean[] inferredBy = new boolean[checkers.size()];
+    int[] missed = new int[16];
+    int missedCount = 0;
+    for (int line = 0; line < lineCount; line++) {
+      int qualifierId = qualifierAtLine[line];
+      if (qualifierId == -1) {
+        continue;
+      }
+      Arrays.fill(inferredBy, false);
+      boolean inferred = false;
+      for (int ajava = 0; ajava < checkerOfAjava.length; ajava++) {
+        if ((missesAtLine[line * wordsPerLine + (ajava >>> 6)] & (1L << ajava)) == 0) {
+          inferred = true;
+          inferredBy[checkerOfAjava[ajava]] = true;
+        }
+      }
+      if (inferred) {
+        matched[qualifierId]++;
+      } else {
+        if (missedCount == missed.length) {
+          missed = Arrays.copyOf(missed, missedCount * 2);
+        }
+        missed[missedCount] = line;
+        missedCount++;
+      }
+      for (int checker = 0; checker < inferredBy.length; checker++) {
+        if (inferredBy[checker]) {
+          matchedBy[checker][qualifierId]++;
+        }
+      }
+    }
+    missedLines = Arrays.copyOf(missed, missedCount);
+  }
+
+  /**
+   * Returns the lines of the annotations recorded with {@link #addAnnotationAt(int, int)} that no
+   * .ajava file infers. {@link #resolveMisses()} must have been called.
+   *
+   * @return the lines of the annotations that are not inferred, in increasing order
+   */
+  int[] getMissedLines() {
+    return missedLines;
+  }
+
+  /**
+   * Returns the counts for each type of annotation in the original file, in order of first
+   * occurrence.
+   *
+   * @param listOfAnnoToIgnore the number of annotations of each type that are within the scope of
+   *     some SuppressWarnings
+   * @param suppressionAnalyzed whether the scopes of SuppressWarnings annotations were examined to
+   *     compute listOfAnnoToIgnore
+   * @return the counts
+   */
+  AnnotationCounts toCounts(Map<String, Integer> listOfAnnoToIgnore, boolean suppressionAnalyzed) {
+    return toCounts(listOfAnnoToIgnore, suppressionAnalyzed, Collections.emptyList());
+  }
+
+  /**
+   * Returns the counts for each type of annotation in the original file, in order of first
+   * occurrence, along with the annotations that were not inferred.
+   *
+   * @param listOfAnnoToIgnore the number of annotations of each type that are within the scope of
+   *     some SuppressWarnings
+   * @param suppressionAnalyzed whether the scopes of SuppressWarnings annotations were examined to
+   *     compute listOfAnnoToIgnore
+   * @param missed the annotations that were not inferred, in order
+   * @return the counts
+   */
+  AnnotationCounts toCounts(
+      Map<String, Integer> listOfAnnoToIgnore,
+      boolean suppressionAnalyzed,
+      List<MissedAnnotation> missed) {
+    List<AnnotationCounts.Count> counts = new ArrayList<>(orderSize);
+    for (int i = 0; i < orderSize; i++) {
+      int qualifierId = order[i];
+      String name = registry.getName(qualifierId);
+      int ignored = listOfAnnoToIgnore.getOrDefault(name, 0);
+      Map<String, Integer> byChecker = new LinkedHashMap<>();
+      for (int checker = 0; checker < checkers.size(); checker++) {
+        byChecker.put(checkers.get(checker), matchedBy[checker][qualifierId]);
+      }
+      counts.add(
+          new AnnotationCounts.Count(
+              name, found[qualifierId], ignored, matched[qualifierId], byChecker));
+    }
+    return new AnnotationCounts(counts, suppressionAnalyzed, missed);
+  }
+}
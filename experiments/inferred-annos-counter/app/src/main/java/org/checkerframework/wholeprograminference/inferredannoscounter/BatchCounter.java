@@ -0,0 +1,425 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The batch entry point for the inferred annos counter. Instead of counting one human-written file
+ * per JVM (as run-iac.sh used to do, by invoking {@link InferredAnnosCounter#main(String[])} once
+ * per file), this class processes a whole project in a single process.
+ *
+ * <p>It takes two arguments: the root directory of the human-written Java files, and the root
+ * directory of the .ajava files generated by WPI. The two trees must have the same structure. A
+ * Java file "dir/Foo.java" under the first root is paired with every file named "dir/Foo-(checker
+ * name).ajava" under the second root, for example
+ * "dir/Foo-org.checkerframework.checker.resourceleak.ResourceLeakChecker.ajava". Java files without
+ * any .ajava file are still counted, so that their annotations show up as not inferred.
+ *
+ * <p>The output has the same format as the output of the old run-iac.sh: for each Java file, in
+ * sorted order, the path of the file followed by a colon, and then the output of {@link
+ * InferredAnnosCounter} for that file. The way to run it is: cd experiments\inferred-annos-counter
+ * and then gradle runBatch --args = "(path to the human-written root) (path to the generated
+ * root)". The files are processed in parallel, but the output is always in the same order.
+ */
+public class BatchCounter {
+
+  /** The file extension of human-written source files. */
+  private static final String JAVA_EXTENSION = ".java";
+
+  /** The file extension of the files generated by WPI. */
+  private static final String AJAVA_EXTENSION = ".ajava";
+
+  /**
+   * The prefix of the command-line option that sets the manifest of the run, e.g.
+   * "--manifest=hadoop.manifest".
+   */
+  static final String MANIFEST_OPTION = "--manifest=";
+
+  /** The prefix of the command-line option that writes the counts as JSON Lines to a file. */
+  static final String JSONL_OPTION = "--jsonl=";
+
+  /** The prefix of the command-line option that writes the counts as CSV to a file. */
+  static final String CSV_OPTION = "--csv=";
+
+  /**
+   * The prefix of the command-line option that writes the annotations that were not inferred to a
+   * file.
+   */
+  static final String MISSED_OPTION = "--missed=";
+
+  /**
+   * The prefix of the command-line option that sets the annotations whose project totals are
+   * printed, e.g. "--totals=@Owning,@NotOwning".
+   */
+  static final String TOTALS_OPTION = "--totals=";
+
+  /**
+   * The number of files per thread that are counted ahead of the file whose counts are being
+   * written. It lets the threads keep busy while the output waits for a slow file, without keeping
+   * the counts of the whole project in memory.
+   */
+  private static final int FILES_IN_FLIGHT_PER_THREAD = 8;
+
+  /**
+   * The main entry point of the batch mode.
+   *
+   * <p>-param args two paths: the root of the human-written Java files and the root of the
+   * generated .ajava files. The option "--threads=N" sets the number of files that are processed in
+   * parallel; the default is the number of available processors. The option "--matcher=ast" selects
+   * the AST-based matcher instead of the default diff-based one, and the options
+   * "--diff=fingerprint" and "--diff=histogram" select the engine of the diff-based matcher. The
+   * option "--cache=DIR" keeps the normalized files in DIR, so that the next run does not parse the
+   * files that did not change, and "--cache-size=MB" bounds the size of DIR (512 MB by default).
+   * The option "--manifest=FILE" records the hashes of the files and their counts in FILE, and
+   * reuses the counts of the files that did not change since the run that wrote FILE; see {@link
+   * RunManifest}. The option "--jsonl=FILE" or "--csv=FILE" also writes the counts to FILE as JSON
+   * Lines or CSV records; see {@link CountRecordWriter}. The option "--missed=FILE" writes the
+   * location of each annotation that was not inferred to FILE; see {@link MissedAnnotationWriter}.
+   * After the files, the totals of the project for the annotations of the resource leak checker,
+   * for the union of the checkers and for each checker, are printed to standard error; the option
+   * "--totals=A,B,..." sets the annotations instead.
+   */
+  public static void main(String[] args) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    InferredAnnosCounter.Matcher matcher = InferredAnnosCounter.Matcher.DIFF;
+    InferredAnnosCounter.DiffEngine engine = InferredAnnosCounter.DiffEngine.MYERS;
+    Path cacheDirectory = null;
+    long cacheMegabytes = NormalizedFileCache.DEFAULT_MAX_MEGABYTES;
+    Path manifestFile = null;
+    Path recordsFile = null;
+    CountRecordWriter.Format recordsFormat = CountRecordWriter.Format.JSONL;
+    List<String> totaled = ProjectTotals.DEFAULT_ANNOTATIONS;
+    Path missedFile = null;
+    List<String> roots = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("--threads=")) {
+        threads = Integer.parseInt(arg.substring("--threads=".length()));
+      } else if (arg.startsWith(InferredAnnosCounter.MATCHER_OPTION)) {
+        matcher = InferredAnnosCounter.parseMatcher(arg);
+      } else if (arg.startsWith(InferredAnnosCounter.DIFF_ENGINE_OPTION)) {
+        engine = InferredAnnosCounter.parseDiffEngine(arg);
+      } else if (arg.startsWith(InferredAnnosCounter.CACHE_OPTION)) {
+        cacheDirectory = Paths.get(arg.substring(InferredAnnosCounter.CACHE_OPTION.length()));
+      } else if (arg.startsWith(InferredAnnosCounter.CACHE_SIZE_OPTION)) {
+        cacheMegabytes =
+            Long.parseLong(arg.substring(InferredAnnosCounter.CACHE_SIZE_OPTION.length()));
+      } else if (arg.startsWith(MANIFEST_OPTION)) {
+        manifestFile = Paths.get(arg.substring(MANIFEST_OPTION.length()));
+      } else if (arg.startsWith(JSONL_OPTION)) {
+        recordsFile = Paths.get(arg.substring(JSONL_OPTION.length()));
+        recordsFormat = CountRecordWriter.Format.JSONL;
+      } else if (arg.startsWith(CSV_OPTION)) {
+        recordsFile = Paths.get(arg.substring(CSV_OPTION.length()));
+        recordsFormat = CountRecordWriter.Format.CSV;
+      } else if (arg.startsWith(MISSED_OPTION)) {
+        missedFile = Paths.get(arg.substring(MISSED_OPTION.length()));
+      } else if (arg.startsWith(TOTALS_OPTION)) {
+        totaled = ProjectTotals.parseAnnotations(arg.substring(TOTALS_OPTION.length()));
+      } else {
+        roots.add(arg);
+      }
+    }
+    if (roots.size() != 2) {
+      throw new RuntimeException(
+          "Provide the root directory of the human-written files and the root directory of the"
+              + " generated files");
+    }
+    // Every file of the batch shares the same registry, which is read only once.
+    QualifierRegistry registry = QualifierRegistry.getDefault();
+    InferredAnnosCounter.Matcher selectedMatcher = matcher;
+    InferredAnnosCounter.DiffEngine selectedEngine = engine;
+    // The cache is shared by all the threads.
+    NormalizedFileCache cache =
+        InferredAnnosCounter.openCache(cacheDirectory, cacheMegabytes, registry);
+    Path humanWrittenRoot = Paths.get(roots.get(0));
+    Path generatedRoot = Paths.get(roots.get(1));
+    Map<Path, List<Path>> pairs = pairFiles(humanWrittenRoot, generatedRoot);
+    String settings = RunManifest.settings(matcher, engine, registry);
+    RunManifest previous = manifestFile == null ? null : RunManifest.read(manifestFile, settings);
+    // The files are independent of each other, so each one is a separate task. The work-stealing
+    // pool keeps every thread busy even though the files vary a lot in size.
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    // Each worker thread adds the counts of its files to its own totals, so that the threads do not
+    // contend on shared counters. The totals of the threads are merged once every task is done.
+    List<String> selectedTotaled = totaled;
+    List<ProjectTotals> threadTotals = Collections.synchronizedList(new ArrayList<>());
+    ThreadLocal<ProjectTotals> totals =
+        ThreadLocal.withInitial(
+            () -> {
+              ProjectTotals result = new ProjectTotals(selectedTotaled);
+              threadTotals.add(result);
+              return result;
+            });
+    try (CountRecordWriter records =
+            recordsFile == null
+                ? null
+                : new CountRecordWriter(recordsFile, recordsFormat, registry);
+        MissedAnnotationWriter missedReport =
+            missedFile == null ? null : new MissedAnnotationWriter(missedFile)) {
+      List<Map.Entry<Path, List<Path>>> pairList = new ArrayList<>(pairs.entrySet());
+      // The tasks of the files that are counted but not yet written, in sorted order. At most
+      // FILES_IN_FLIGHT_PER_THREAD files per thread are submitted ahead of the file being written,
+      // so that the results of the files do not pile up in memory behind a slow file.
+      Deque<ForkJoinTask<FileResult>> inFlight = new ArrayDeque<>();
+      int maxInFlight = FILES_IN_FLIGHT_PER_THREAD * threads;
+      int submitted = 0;
+      // the number of files counted by this run, rather than taken from the manifest
+      int counted = 0;
+      // the number of files counted by this run without examining the scopes of SuppressWarnings
+      int fastPath = 0;
+      // the number of files whose counts were taken from the manifest
+      int reused = 0;
+      // the number of files that could not be processed
+      int failed = 0;
+      // the entries of the manifest written by this run, in sorted order
+      Map<String, RunManifest.Entry> entries = new LinkedHashMap<>();
+      // The results are printed in the sorted order of the pairs, no matter in which order the
+      // tasks finish, so that the output is deterministic. Each result is dropped once it is
+      // written.
+      for (int written = 0; written < pairList.size(); written++) {
+        while (submitted < pairList.size() && submitted < written + maxInFlight) {
+          Map.Entry<Path, List<Path>> pair = pairList.get(submitted);
+          inFlight.add(
+              pool.submit(
+                  () -> {
+                    FileResult result =
+                        countFile(
+                            pair.getKey(),
+                            pair.getValue(),
+                            selectedMatcher,
+                            selectedEngine,
+                            registry,
+                            cache,
+                            previous,
+                            humanWrittenRoot,
+                            generatedRoot);
+                    if (result.counts != null) {
+                      totals.get().add(result.counts);
+                    }
+                    return result;
+                  }));
+          submitted++;
+        }
+        FileResult result = inFlight.remove().join();
+        System.out.println(result.javaFile + ":");
+        if (result.counts != null) {
+          System.out.println();
+          InferredAnnosCounter.printCounts(result.counts, System.out);
+          if (records != null) {
+            records.write(result.javaFile, result.counts);
+          }
+          if (missedReport != null) {
+            missedReport.write(result.javaFile, result.counts);
+          }
+          if (result.inputs != null) {
+            entries.put(
+                humanWrittenRoot.relativize(result.javaFile).toString(),
+                new RunManifest.Entry(result.inputs, result.counts));
+          }
+          if (result.fromManifest) {
+            reused++;
+          } else {
+            counted++;
+            if (!result.counts.isSuppressionAnalyzed()) {
+              fastPath++;
+            }
+          }
+        } else {
+          failed++;
+          System.err.println("Could not process " + result.javaFile + ": " + result.error);
+        }
+      }
+      // The summary goes to standard error, so that the output keeps the format of run-iac.sh.
+      System.err.println(
+          "Counted "
+              + counted
+              + " files; "
+              + fastPath
+              + " of them took the fast path without SuppressWarnings analysis.");
+      if (failed > 0) {
+        System.err.println("Could not process " + failed + " files.");
+      }
+      // Every task has been joined, so the totals of the threads are complete.
+      ProjectTotals projectTotals = new ProjectTotals(totaled);
+      synchronized (threadTotals) {
+        for (ProjectTotals t : threadTotals) {
+          projectTotals.merge(t);
+        }
+      }
+      projectTotals.print(System.err);
+      if (manifestFile != null) {
+        // Files that could not be processed are not in the manifest, so the next run tries again.
+        RunManifest.write(manifestFile, settings, entries);
+        System.err.println(
+            "Reused the counts of " + reused + " unchanged files from " + manifestFile + ".");
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write the output files", e);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** The result of the counter for one Java file of the batch. */
+  private static class FileResult {
+
+    /** The human-written Java file. */
+    final Path javaFile;
+
+    /** The counts for the file, or null if it could not be processed. */
+    final @Nullable AnnotationCounts counts;
+
+    /** The reason the file could not be processed, or null if it was processed successfully. */
+    final @Nullable String error;
+
+    /**
+     * The hashes of the inputs of the counter for the file (see {@link RunManifest#inputs}), or
+     * null if there is no manifest.
+     */
+    final @Nullable List<String> inputs;
+
+    /** True if the counts were taken from the manifest instead of being computed. */
+    final boolean fromManifest;
+
+    /**
+     * Creates a new FileResult.
+     *
+     * @param javaFile the human-written Java file
+     * @param counts the counts for the file, or null if it could not be processed
+     * @param error the reason the file could not be processed, or null
+     * @param inputs the hashes of the inputs of the counter for the file, or null
+     * @param fromManifest true if the counts were taken from the manifest
+     */
+    FileResult(
+        Path javaFile,
+        @Nullable AnnotationCounts counts,
+        @Nullable String error,
+        @Nullable List<String> inputs,
+        boolean fromManifest) {
+      this.javaFile = javaFile;
+      this.counts = counts;
+      this.error = error;
+      this.inputs = inputs;
+      this.fromManifest = fromManifest;
+    }
+  }
+
+  /**
+   * Runs the counter on one Java file and its .ajava files, unless the manifest of the previous run
+   * has the counts for the same content of the files.
+   *
+   * @param javaFile the human-written Java file
+   * @param ajavaFiles the .ajava files paired with javaFile
+   * @param matcher the algorithm that matches the annotations of the files
+   * @param engine the algorithm that diffs the files, if matcher is DIFF
+   * @param registry the tracked annotations
+   * @param cache the cache of normalized files, or null if there is none
+   * @param previous the manifest of the previous run, or null if there is no manifest
+   * @param humanWrittenRoot the root directory of the human-written Java files
+   * @param generatedRoot the root directory of the generated .ajava files
+   * @return the result of the counter for javaFile
+   */
+  private static FileResult countFile(
+      Path javaFile,
+      List<Path> ajavaFiles,
+      InferredAnnosCounter.Matcher matcher,
+      InferredAnnosCounter.DiffEngine engine,
+      QualifierRegistry registry,
+      @Nullable NormalizedFileCache cache,
+      @Nullable RunManifest previous,
+      Path humanWrittenRoot,
+      Path generatedRoot) {
+    try {
+      List<String> inputs = null;
+      if (previous != null) {
+        inputs = RunManifest.inputs(javaFile, ajavaFiles, generatedRoot);
+        AnnotationCounts counts =
+            previous.lookup(humanWrittenRoot.relativize(javaFile).toString(), inputs);
+        if (counts != null) {
+          return new FileResult(javaFile, counts, null, inputs, true);
+        }
+      }
+      return new FileResult(
+          javaFile,
+          InferredAnnosCounter.count(javaFile, ajavaFiles, matcher, engine, registry, cache),
+          null,
+          inputs,
+          false);
+    } catch (RuntimeException e) {
+      // One file that cannot be processed should not stop the whole project.
+      return new FileResult(javaFile, null, e.toString(), null, false);
+    }
+  }
+
+  /**
+   * Pairs every Java file under the human-written root with its .ajava files under the generated
+   * root. See the class documentation for the naming convention.
+   *
+   * @param humanWrittenRoot the root directory of the human-written Java files
+   * @param generatedRoot the root directory of the generated .ajava files
+   * @return a map, sorted by path, from each Java file to its .ajava files (also sorted). The Java
+   *     file paths start with humanWrittenRoot and the .ajava file paths start with generatedRoot.
+   */
+  static Map<Path, List<Path>> pairFiles(Path humanWrittenRoot, Path generatedRoot) {
+    Map<Path, List<Path>> pairs = new TreeMap<>();
+    for (Path javaFile : findFiles(humanWrittenRoot, JAVA_EXTENSION)) {
+      pairs.put(javaFile, new ArrayList<>());
+    }
+    for (Path ajavaFile : findFiles(generatedRoot, AJAVA_EXTENSION)) {
+      Path relative = generatedRoot.relativize(ajavaFile);
+      String fileName = relative.getFileName().toString();
+      int indexOfDash = fileName.indexOf('-');
+      if (indexOfDash == -1) {
+        continue;
+      }
+      // A class name cannot contain a dash, so everything before the first dash is the name of the
+      // class and everything after it is the name of the checker.
+      String javaFileName = fileName.substring(0, indexOfDash) + JAVA_EXTENSION;
+      Path parent = relative.getParent();
+      Path javaRelative = parent == null ? Paths.get(javaFileName) : parent.resolve(javaFileName);
+      List<Path> ajavaFiles = pairs.get(humanWrittenRoot.resolve(javaRelative));
+      // .ajava files without a human-written counterpart (e.g., for generated sources) are ignored.
+      if (ajavaFiles != null) {
+        ajavaFiles.add(ajavaFile);
+      }
+    }
+    for (List<Path> ajavaFiles : pairs.values()) {
+      ajavaFiles.sort(null);
+    }
+    return pairs;
+  }
+
+  /**
+   * Returns all regular files under the given directory that have the given extension.
+   *
+   * @param root the directory to search
+   * @param extension the file extension, including the dot
+   * @return the matching files, sorted by path
+   */
+  private static List<Path> findFiles(Path root, String extension) {
+    try (Stream<Path> files = Files.walk(root)) {
+      return files
+          .filter(file -> Files.isRegularFile(file))
+          .filter(file -> file.getFileName().toString().endsWith(extension))
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read directory: " + root + ". Check that it exists?");
+    }
+  }
+}
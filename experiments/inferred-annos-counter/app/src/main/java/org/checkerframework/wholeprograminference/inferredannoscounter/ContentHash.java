@@ -0,0 +1,54 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digests, which identify the content of the input files in the cache of normalized files
+ * (see {@link NormalizedFileCache}) and in the manifest of a batch run (see {@link RunManifest}).
+ */
+final class ContentHash {
+
+  /** Do not instantiate. */
+  private ContentHash() {
+    throw new Error("Do not instantiate ContentHash");
+  }
+
+  /**
+   * Returns a new SHA-256 digest.
+   *
+   * @return a new SHA-256 digest
+   */
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every implementation of the Java platform supports SHA-256.
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Returns the SHA-256 digest of some bytes, as hexadecimal digits.
+   *
+   * @param content some bytes, usually the content of a file
+   * @return the digest of content, as 64 hexadecimal digits
+   */
+  static String of(byte[] content) {
+    return toHex(newDigest().digest(content));
+  }
+
+  /**
+   * Returns some bytes as hexadecimal digits.
+   *
+   * @param bytes some bytes
+   * @return two lowercase hexadecimal digits per byte
+   */
+  static String toHex(byte[] bytes) {
+    StringBuilder result = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes) {
+      result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,181 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import org.checkerframework.checker.calledmethods.qual.EnsuresCalledMethods;
+import org.checkerframework.checker.mustcall.qual.Owning;
+
+/**
+ * Writes the counts of a batch run as machine-readable records, one per type of annotation of each
+ * Java file, so that the results can be aggregated in a single pass instead of by parsing the
+ * "@Owning got 1/2" lines of the standard output. The records are written as the files are counted.
+ *
+ * <p>Each record has the fields file (the path of the Java file), annotation (in the simple format,
+ * e.g. "@Owning"), fqn (the fully-qualified names of the annotation in type-qualifiers.txt),
+ * matched (the number of annotations that are in at least one .ajava file), total (the number of
+ * annotations that are counted), ignored (the number of annotations that are not counted because
+ * they are in the scope of some SuppressWarnings), and matched_by (for the checker of each .ajava
+ * file, the number of annotations that are in at least one of its .ajava files). Unlike the
+ * standard output, the records include the types of annotation that are all ignored.
+ */
+final class CountRecordWriter implements Closeable {
+
+  /** The formats of the records. */
+  enum Format {
+    /** One JSON object per line. */
+    JSONL,
+    /**
+     * Comma-separated values, with a header line. The fqn field separates names with ';', and the
+     * matched_by field is a list "checker=matched;...".
+     */
+    CSV
+  }
+
+  /** The names of the fields, in order. */
+  private static final String[] FIELDS = {
+    "file", "annotation", "fqn", "matched", "total", "ignored", "matched_by"
+  };
+
+  /** The format of the records. */
+  private final Format format;
+
+  /** The tracked annotations, for their fully-qualified names. */
+  private final QualifierRegistry registry;
+
+  /** The file the records are written to. */
+  private final @Owning BufferedWriter out;
+
+  /**
+   * Creates a new CountRecordWriter, which truncates the given file.
+   *
+   * @param file the file to write the records to
+   * @param format the format of the records
+   * @param registry the tracked annotations
+   */
+  CountRecordWriter(Path file, Format format, QualifierRegistry registry) {
+    this.format = format;
+    this.registry = registry;
+    try {
+      this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+      if (format == Format.CSV) {
+        out.write(String.join(",", FIELDS));
+        out.newLine();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write " + file, e);
+    }
+  }
+
+  /**
+   * Writes the records of one Java file.
+   *
+   * @param javaFile the Java file
+   * @param counts the counts for javaFile
+   */
+  void write(Path javaFile, AnnotationCounts counts) {
+    try {
+      for (AnnotationCounts.Count count : counts.getCounts()) {
+        String annotation = count.getAnnotation();
+        List<String> fqns = registry.getFullyQualifiedNames(annotation.substring(1));
+        if (format == Format.JSONL) {
+          out.write("{\"file\":");
+          writeJsonString(javaFile.toString());
+          out.write(",\"annotation\":");
+          writeJsonString(annotation);
+          out.write(",\"fqn\":[");
+          for (int i = 0; i < fqns.size(); i++) {
+            if (i > 0) {
+              out.write(',');
+            }
+            writeJsonString(fqns.get(i));
+          }
+          out.write("],\"matched\":" + count.getMatched());
+          out.write(",\"total\":" + count.getTotal());
+          out.write(",\"ignored\":" + count.getIgnored());
+          out.write(",\"matched_by\":{");
+          boolean first = true;
+          for (Map.Entry<String, Integer> matchedBy : count.getMatchedBy().entrySet()) {
+            if (!first) {
+              out.write(',');
+            }
+            first = false;
+            writeJsonString(matchedBy.getKey());
+            out.write(":" + matchedBy.getValue());
+          }
+          out.write("}}");
+        } else {
+          writeCsvField(javaFile.toString());
+          out.write(',');
+          writeCsvField(annotation);
+          out.write(',');
+          writeCsvField(String.join(";", fqns));
+          out.write("," + count.getMatched() + "," + count.getTotal() + "," + count.getIgnored());
+          out.write(',');
+          StringJoiner matchedBy = new StringJoiner(";");
+          for (Map.Entry<String, Integer> e : count.getMatchedBy().entrySet()) {
+            matchedBy.add(e.getKey() + "=" + e.getValue());
+          }
+          writeCsvField(matchedBy.toString());
+        }
+        out.newLine();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes a string as a JSON string literal.
+   *
+   * @param str a string
+   * @throws IOException if the records cannot be written
+   */
+  private void writeJsonString(String str) throws IOException {
+    out.write('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write(String.format("\\u%04x", (int) c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+
+  /**
+   * Writes a string as a CSV field, quoting it if it contains a comma, a quote, or a line break.
+   *
+   * @param str a string
+   * @throws IOException if the records cannot be written
+   */
+  private void writeCsvField(String str) throws IOException {
+    if (str.indexOf(',') == -1
+        && str.indexOf('"') == -1
+        && str.indexOf('\n') == -1
+        && str.indexOf('\r') == -1) {
+      out.write(str);
+      return;
+    }
+    out.write('"');
+    out.write(str.replace("\"", "\"\""));
+    out.write('"');
+  }
+
+  @Override
+  @EnsuresCalledMethods(value = "this.out", methods = "close")
+  public void close() throws IOException {
+    out.close();
+  }
+}
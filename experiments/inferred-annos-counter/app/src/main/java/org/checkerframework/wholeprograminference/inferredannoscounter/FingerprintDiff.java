@@ -0,0 +1,306 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.DeltaType;
+import com.github.difflib.patch.Patch;
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A line diff that compares 64-bit fingerprints of the lines instead of the lines themselves. Each
+ * line is fingerprinted once, when the diff is created (for the original file) or when {@link
+ * #diff(List)} is called (for an .ajava file), and the diff algorithm then compares only longs.
+ *
+ * <p>The lines of the original file are put in a table of fingerprints when the diff is created.
+ * Two different lines can have the same hash, so the table resolves collisions: the first line with
+ * a given hash owns it, and a different line with the same hash gets the next free fingerprint in a
+ * deterministic sequence. A line of an .ajava file is only looked up in the table, and a line that
+ * is not there gets a fingerprint that no line of the original file has, since the algorithms only
+ * compare lines of the original file with lines of the .ajava file. So equal fingerprints always
+ * mean equal lines, the strings are compared once per line (with String.equals, when the hash of
+ * the line is in the table) instead of once per step of the search, and the table holds only the
+ * lines of the original file, which the diff keeps anyway.
+ *
+ * <p>The algorithm is either {@link #computeMyersChanges(long[], long[])}, whose search follows the
+ * same path as {@link com.github.difflib.DiffUtils#diff(List, List)} so that the result is the same
+ * patch, or {@link HistogramDiff}. A FingerprintDiff keeps the fingerprints of the original file,
+ * so one instance is used for all the .ajava files of a human-written file. Instances are not
+ * thread-safe.
+ */
+final class FingerprintDiff implements LineDiff {
+
+  /** An algorithm that computes the differences between two arrays of fingerprints. */
+  interface Algorithm {
+
+    /**
+     * Computes the changes that turn the source into the target.
+     *
+     * @param source the fingerprints of the original file
+     * @param target the fingerprints of the .ajava file
+     * @return the changes, in order
+     */
+    List<Change> computeChanges(long[] source, long[] target);
+  }
+
+  /** The offset basis of the 64-bit FNV-1a hash. */
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  /** The prime of the 64-bit FNV-1a hash. */
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /** The multiplier that derives the next candidate fingerprint of a line after a collision. */
+  private static final long COLLISION_STEP = 0x9e3779b97f4a7c15L;
+
+  /** The algorithm that diffs the fingerprints. */
+  private final Algorithm algorithm;
+
+  /** The lines of the original file. */
+  private final List<String> original;
+
+  /** The fingerprints of the lines of the original file. */
+  private final long[] originalFingerprints;
+
+  /**
+   * The fingerprints of the lines of the original file, in an open-addressing table whose capacity
+   * is more than twice the number of lines, so it is never more than half full.
+   */
+  private final long[] tableFingerprints;
+
+  /** The line that owns each fingerprint of tableFingerprints, or null for an empty slot. */
+  private final @Nullable String[] tableLines;
+
+  /** The fingerprint of every line that is not a line of the original file. */
+  private final long absentFingerprint;
+
+  /**
+   * Creates a new FingerprintDiff, and fingerprints the lines of the original file.
+   *
+   * @param original the lines of the original file, after normalization
+   * @param algorithm the algorithm that diffs the fingerprints
+   */
+  FingerprintDiff(List<String> original, Algorithm algorithm) {
+    this.algorithm = algorithm;
+    this.original = original;
+    int capacity = Integer.highestOneBit(Math.max(original.size(), 16) * 4);
+    this.tableFingerprints = new long[capacity];
+    this.tableLines = new @Nullable String[capacity];
+    this.originalFingerprints = new long[original.size()];
+    int i = 0;
+    for (String line : original) {
+      originalFingerprints[i] = add(line);
+      i++;
+    }
+    // Outside the range that Long.valueOf caches: the JIT compiler removes the boxing of the
+    // fingerprints in HistogramDiff, but not of a cached value.
+    long absent = Long.MIN_VALUE;
+    while (isInTable(absent)) {
+      absent++;
+    }
+    this.absentFingerprint = absent;
+  }
+
+  @Override
+  public Patch<String> diff(List<String> revised) {
+    long[] revisedFingerprints = new long[revised.size()];
+    int i = 0;
+    for (String line : revised) {
+      revisedFingerprints[i] = fingerprint(line);
+      i++;
+    }
+    return Patch.generate(
+        original, revised, algorithm.computeChanges(originalFingerprints, revisedFingerprints));
+  }
+
+  /**
+   * Adds a line of the original file to the table, unless it is already there.
+   *
+   * @param line a line of the original file
+   * @return the fingerprint of the line
+   */
+  private long add(String line) {
+    long candidate = hash(line);
+    int mask = tableLines.length - 1;
+    int slot = slotOf(candidate, mask);
+    while (true) {
+      String owner = tableLines[slot];
+      if (owner == null) {
+        tableFingerprints[slot] = candidate;
+        tableLines[slot] = line;
+        return candidate;
+      }
+      if (tableFingerprints[slot] != candidate) {
+        slot = (slot + 1) & mask;
+      } else if (owner.equals(line)) {
+        return candidate;
+      } else {
+        // A collision: a different line already owns this fingerprint.
+        candidate = candidate * COLLISION_STEP + 1;
+        slot = slotOf(candidate, mask);
+      }
+    }
+  }
+
+  /**
+   * Returns the fingerprint of a line, without adding it to the table. The search follows the same
+   * slots as {@link #add(String)}, so it finds the fingerprint of a line of the original file.
+   *
+   * @param line a line
+   * @return the fingerprint of the line if it is a line of the original file, and otherwise a
+   *     fingerprint that no line of the original file has
+   */
+  long fingerprint(String line) {
+    long candidate = hash(line);
+    int mask = tableLines.length - 1;
+    int slot = slotOf(candidate, mask);
+    while (true) {
+      String owner = tableLines[slot];
+      if (owner == null) {
+        return absentFingerprint;
+      }
+      if (tableFingerprints[slot] != candidate) {
+        slot = (slot + 1) & mask;
+      } else if (owner.equals(line)) {
+        return candidate;
+      } else {
+        candidate = candidate * COLLISION_STEP + 1;
+        slot = slotOf(candidate, mask);
+      }
+    }
+  }
+
+  /**
+   * Returns true if some line of the original file has the given fingerprint.
+   *
+   * @param fingerprint a fingerprint
+   * @return true if fingerprint is in the table
+   */
+  private boolean isInTable(long fingerprint) {
+    int mask = tableLines.length - 1;
+    int slot = slotOf(fingerprint, mask);
+    while (tableLines[slot] != null) {
+      if (tableFingerprints[slot] == fingerprint) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the slot of the table where the search for a fingerprint starts.
+   *
+   * @param fingerprint a fingerprint
+   * @param mask the capacity of the table minus one
+   * @return the first slot to probe
+   */
+  private static int slotOf(long fingerprint, int mask) {
+    return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the characters of a line.
+   *
+   * @param line a line
+   * @return the hash of the line
+   */
+  static long hash(String line) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = 0; i < line.length(); i++) {
+      hash ^= line.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Runs the Myers search over two arrays of fingerprints. The search and the choice between two
+   * equally short paths are the same as in java-diff-utils, and so are the changes: all the lines
+   * between two runs of equal lines form one change.
+   *
+   * @param source the fingerprints of the original file
+   * @param target the fingerprints of the .ajava file
+   * @return the changes, in order
+   */
+  static List<Change> computeMyersChanges(long[] source, long[] target) {
+    int n = source.length;
+    int m = target.length;
+    int max = n + m;
+    int offset = max + 1;
+    // v[offset + k] is the furthest x reached on diagonal k (x - y == k) so far.
+    int[] v = new int[2 * max + 3];
+    // trace.get(d)[(k + d) / 2] is the furthest x on diagonal k after d edits.
+    List<int[]> trace = new ArrayList<>();
+    int edits = 0;
+    search:
+    for (int d = 0; d <= max; d++) {
+      int[] row = new int[d + 1];
+      for (int k = -d; k <= d; k += 2) {
+        int x =
+            (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                ? v[offset + k + 1]
+                : v[offset + k - 1] + 1;
+        int y = x - k;
+        while (x < n && y < m && source[x] == target[y]) {
+          x++;
+          y++;
+        }
+        v[offset + k] = x;
+        row[(k + d) / 2] = x;
+        if (x >= n && y >= m) {
+          edits = d;
+          break search;
+        }
+      }
+      trace.add(row);
+    }
+
+    // Walk the path backwards to find the deleted and the inserted lines.
+    boolean[] deleted = new boolean[n];
+    boolean[] inserted = new boolean[m];
+    int x = n;
+    int y = m;
+    for (int d = edits; d > 0; d--) {
+      int[] previous = trace.get(d - 1);
+      int k = x - y;
+      boolean down =
+          k == -d
+              || (k != d && previous[(k - 1 + d - 1) / 2] < previous[(k + 1 + d - 1) / 2]);
+      int previousK = down ? k + 1 : k - 1;
+      int previousX = previous[(previousK + d - 1) / 2];
+      int previousY = previousX - previousK;
+      if (down) {
+        inserted[previousY] = true;
+      } else {
+        deleted[previousX] = true;
+      }
+      x = previousX;
+      y = previousY;
+    }
+
+    List<Change> changes = new ArrayList<>();
+    int i = 0;
+    int j = 0;
+    while (i < n || j < m) {
+      if (i < n && j < m && !deleted[i] && !inserted[j]) {
+        i++;
+        j++;
+        continue;
+      }
+      int startI = i;
+      int startJ = j;
+      while (i < n && deleted[i]) {
+        i++;
+      }
+      while (j < m && inserted[j]) {
+        j++;
+      }
+      DeltaType type =
+          i > startI && j > startJ
+              ? DeltaType.CHANGE
+              : (i > startI ? DeltaType.DELETE : DeltaType.INSERT);
+      changes.add(new Change(type, startI, i, startJ, j));
+    }
+    return changes;
+  }
+}
@@ -0,0 +1,238 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.DeltaType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The histogram diff, as in JGit, over arrays of line fingerprints. Instead of the shortest edit
+ * script, it looks for the longest run of equal lines that contains the rarest lines of the
+ * original region, aligns the two files on it, and then handles the regions before and after it the
+ * same way. Lines that occur many times, such as "}" or "@Override", are never used as anchors.
+ *
+ * <p>When a file reorders or rewraps long blocks, Myers diff pairs up unrelated lines and reports
+ * long CHANGE deltas. Anchoring on rare lines keeps the unchanged declarations aligned, so the
+ * deltas are short and each one is around the annotations that actually differ. A region whose
+ * common lines all occur too often to be anchors falls back to {@link
+ * FingerprintDiff#computeMyersChanges(long[], long[])}.
+ */
+final class HistogramDiff {
+
+  /**
+   * The maximum number of occurrences in the original region of a line used as an anchor. The same
+   * limit as in JGit.
+   */
+  private static final int MAX_OCCURRENCES = 64;
+
+  /** The fingerprints of the original file. */
+  private final long[] source;
+
+  /** The fingerprints of the .ajava file. */
+  private final long[] target;
+
+  /** The changes found so far, in order. */
+  private final List<Change> changes = new ArrayList<>();
+
+  /**
+   * Creates a new HistogramDiff.
+   *
+   * @param source the fingerprints of the original file
+   * @param target the fingerprints of the .ajava file
+   */
+  private HistogramDiff(long[] source, long[] target) {
+    this.source = source;
+    this.target = target;
+  }
+
+  /**
+   * Computes the changes that turn the source into the target with the histogram diff. Like in
+   * java-diff-utils, all the lines between two runs of equal lines form one change.
+   *
+   * @param source the fingerprints of the original file
+   * @param target the fingerprints of the .ajava file
+   * @return the changes, in order
+   */
+  static List<Change> computeChanges(long[] source, long[] target) {
+    HistogramDiff diff = new HistogramDiff(source, target);
+    // The regions still to diff, each {sourceStart, sourceEnd, targetStart, targetEnd}. The
+    // leftmost region is always on top, so the changes are found in order. An explicit stack
+    // instead of recursion keeps large files from overflowing the call stack.
+    Deque<int[]> regions = new ArrayDeque<>();
+    regions.push(new int[] {0, source.length, 0, target.length});
+    while (!regions.isEmpty()) {
+      int[] region = regions.pop();
+      diff.diffRegion(region[0], region[1], region[2], region[3], regions);
+    }
+    return diff.changes;
+  }
+
+  /**
+   * Diffs one region of the files. Either records its changes, or splits it around an anchor and
+   * pushes the regions before and after the anchor.
+   *
+   * @param sourceStart the first line of the region in the original file
+   * @param sourceEnd the end (exclusive) of the region in the original file
+   * @param targetStart the first line of the region in the .ajava file
+   * @param targetEnd the end (exclusive) of the region in the .ajava file
+   * @param regions the regions still to diff
+   */
+  private void diffRegion(
+      int sourceStart, int sourceEnd, int targetStart, int targetEnd, Deque<int[]> regions) {
+    while (sourceStart < sourceEnd
+        && targetStart < targetEnd
+        && source[sourceStart] == target[targetStart]) {
+      sourceStart++;
+      targetStart++;
+    }
+    while (sourceEnd > sourceStart
+        && targetEnd > targetStart
+        && source[sourceEnd - 1] == target[targetEnd - 1]) {
+      sourceEnd--;
+      targetEnd--;
+    }
+    if (sourceStart == sourceEnd || targetStart == targetEnd) {
+      addChange(sourceStart, sourceEnd, targetStart, targetEnd);
+      return;
+    }
+
+    // The histogram of the original region: for each line, the number of its occurrences and
+    // the last one. previousOccurrence chains the other occurrences.
+    Map<Long, int[]> histogram = new HashMap<>();
+    int[] previousOccurrence = new int[sourceEnd - sourceStart];
+    for (int i = sourceStart; i < sourceEnd; i++) {
+      int[] entry = histogram.get(source[i]);
+      if (entry == null) {
+        previousOccurrence[i - sourceStart] = -1;
+        histogram.put(source[i], new int[] {1, i});
+      } else {
+        previousOccurrence[i - sourceStart] = entry[1];
+        entry[0]++;
+        entry[1] = i;
+      }
+    }
+    // the number of occurrences in the region of each line of the region
+    int[] occurrences = new int[sourceEnd - sourceStart];
+    for (int[] entry : histogram.values()) {
+      for (int i = entry[1]; i != -1; i = previousOccurrence[i - sourceStart]) {
+        occurrences[i - sourceStart] = entry[0];
+      }
+    }
+
+    boolean hasCommonLine = false;
+    int bestCount = MAX_OCCURRENCES + 1;
+    int bestSourceStart = 0;
+    int bestSourceEnd = 0;
+    int bestTargetStart = 0;
+    int bestTargetEnd = 0;
+    for (int j = targetStart; j < targetEnd; ) {
+      int[] entry = histogram.get(target[j]);
+      int next = j + 1;
+      if (entry != null) {
+        hasCommonLine = true;
+        if (entry[0] <= Math.min(bestCount, MAX_OCCURRENCES)) {
+          for (int i = entry[1]; i != -1; i = previousOccurrence[i - sourceStart]) {
+            int runSourceStart = i;
+            int runTargetStart = j;
+            int count = occurrences[i - sourceStart];
+            while (runSourceStart > sourceStart
+                && runTargetStart > targetStart
+                && source[runSourceStart - 1] == target[runTargetStart - 1]) {
+              runSourceStart--;
+              runTargetStart--;
+              count = Math.min(count, occurrences[runSourceStart - sourceStart]);
+            }
+            int runSourceEnd = i + 1;
+            int runTargetEnd = j + 1;
+            while (runSourceEnd < sourceEnd
+                && runTargetEnd < targetEnd
+                && source[runSourceEnd] == target[runTargetEnd]) {
+              count = Math.min(count, occurrences[runSourceEnd - sourceStart]);
+              runSourceEnd++;
+              runTargetEnd++;
+            }
+            if (bestSourceEnd - bestSourceStart < runSourceEnd - runSourceStart
+                || count < bestCount) {
+              bestCount = count;
+              bestSourceStart = runSourceStart;
+              bestSourceEnd = runSourceEnd;
+              bestTargetStart = runTargetStart;
+              bestTargetEnd = runTargetEnd;
+            }
+            next = Math.max(next, runTargetEnd);
+          }
+        }
+      }
+      j = next;
+    }
+
+    if (!hasCommonLine) {
+      addChange(sourceStart, sourceEnd, targetStart, targetEnd);
+    } else if (bestCount > MAX_OCCURRENCES) {
+      addMyersChanges(sourceStart, sourceEnd, targetStart, targetEnd);
+    } else {
+      regions.push(new int[] {bestSourceEnd, sourceEnd, bestTargetEnd, targetEnd});
+      regions.push(new int[] {sourceStart, bestSourceStart, targetStart, bestTargetStart});
+    }
+  }
+
+  /**
+   * Diffs a region of the files with the Myers diff.
+   *
+   * @param sourceStart the first line of the region in the original file
+   * @param sourceEnd the end (exclusive) of the region in the original file
+   * @param targetStart the first line of the region in the .ajava file
+   * @param targetEnd the end (exclusive) of the region in the .ajava file
+   */
+  private void addMyersChanges(int sourceStart, int sourceEnd, int targetStart, int targetEnd) {
+    List<Change> regionChanges =
+        FingerprintDiff.computeMyersChanges(
+            Arrays.copyOfRange(source, sourceStart, sourceEnd),
+            Arrays.copyOfRange(target, targetStart, targetEnd));
+    for (Change change : regionChanges) {
+      addChange(
+          sourceStart + change.startOriginal,
+          sourceStart + change.endOriginal,
+          targetStart + change.startRevised,
+          targetStart + change.endRevised);
+    }
+  }
+
+  /**
+   * Records that a range of lines of the original file is replaced by a range of lines of the
+   * .ajava file. A change that directly follows the previous one is merged with it. Empty changes
+   * are not recorded.
+   *
+   * @param sourceStart the first replaced line of the original file
+   * @param sourceEnd the end (exclusive) of the replaced lines of the original file
+   * @param targetStart the first replacing line of the .ajava file
+   * @param targetEnd the end (exclusive) of the replacing lines of the .ajava file
+   */
+  private void addChange(int sourceStart, int sourceEnd, int targetStart, int targetEnd) {
+    if (sourceStart == sourceEnd && targetStart == targetEnd) {
+      return;
+    }
+    if (!changes.isEmpty()) {
+      Change last = changes.get(changes.size() - 1);
+      if (last.endOriginal == sourceStart && last.endRevised == targetStart) {
+        changes.remove(changes.size() - 1);
+        sourceStart = last.startOriginal;
+        targetStart = last.startRevised;
+      }
+    }
+    DeltaType type;
+    if (sourceStart == sourceEnd) {
+      type = DeltaType.INSERT;
+    } else if (targetStart == targetEnd) {
+      type = DeltaType.DELETE;
+    } else {
+      type = DeltaType.CHANGE;
+    }
+    changes.add(new Change(type, sourceStart, sourceEnd, targetStart, targetEnd));
+  }
+}
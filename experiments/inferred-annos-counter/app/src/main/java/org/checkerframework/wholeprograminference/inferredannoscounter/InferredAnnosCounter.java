@@ -4,327 +4,101 @@ import com.github.difflib.DiffUtils;
 import com.github.difflib.patch.AbstractDelta;
 import com.github.difflib.patch.DeltaType;
 import com.github.difflib.patch.Patch;
-import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.expr.AnnotationExpr;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.checkerframework.checker.index.qual.IndexFor;
-import org.checkerframework.framework.stub.RemoveAnnotationsForInference;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * The entry point for the inferred annos counter. To run the program, you need to pass arguments.
  * The first argument should be the path to the human-written Java file. Optionally, you can provide
  * one or more paths to the corresponding computer-generated .ajava files. The path here should be
  * relative to "experiments\inferred-annos-counter." InferredAnnosCounter only takes one
- * human-written source file at a time. So in case it is needed to run multiple human-written files
- * with corresponding computer-generated files, InferredAnnosCounter needs to be invoked multiple
- * times. The way to run InferredAnnosCounter is like this: cd experiments\inferred-annos-counter
- * (going to the working directory) and then gradle run --args = "(a path to the human-written file)
- * (optionally one or more paths to the computer-generated files)". The result will not be in
- * alphabetical order.
+ * human-written source file at a time. To count a whole project, with each human-written file
+ * paired with its computer-generated files, use {@link BatchCounter} (the runBatch Gradle task)
+ * instead, which counts every file in one process. The way to run InferredAnnosCounter is like
+ * this: cd experiments\inferred-annos-counter (going to the working directory) and then gradle run
+ * --args = "(a path to the human-written file) (optionally one or more paths to the
+ * computer-generated files)". The annotations are reported in the order they first occur in the
+ * human-written file, not in alphabetical order.
  */
 public class InferredAnnosCounter {
 
   /**
-   * This enum classifies input lines. A line is OPEN if it contains the beginning of a multi-line
-   * annotation, CLOSE if it contains the ending of a multi-line annotation. For other cases, it is
-   * considered COMPLETE.
+   * The algorithms that decide whether an annotation of the human-written file is in an .ajava
+   * file. DIFF, the default, diffs the lines of the files. AST keys each annotation by its site in
+   * the AST instead; see {@link AnnotationSiteMatcher}. The two are expected to agree, so running
+   * both is a way to cross-check them.
    */
-  enum LineStatus {
-    OPEN,
-    COMPLETE,
-    CLOSE
+  public enum Matcher {
+    DIFF,
+    AST
   }
 
-  /**
-   * This method returns true if the first not-a-whitespace character of a line is a dot. It returns
-   * false in other cases
-   *
-   * @param line a line to be analyzed
-   * @return true of the first non-whitespace character of that line is a dot, false otherwise.
-   */
-  private static boolean firstIsDot(String line) {
-    String trimmed = line.trim();
-    return trimmed.length() == 0 ? false : trimmed.charAt(0) == '.';
-  }
+  /** The prefix of the command-line option that selects the matcher, e.g. "--matcher=ast". */
+  static final String MATCHER_OPTION = "--matcher=";
 
   /**
-   * If an annotation is too long, Google Java Format will make it multi-line. This method checks if
-   * a line contains the beginning of those annotations.
-   *
-   * <p>For example, the first line contains the beginning of MonotonicNonNull:
-   * static @org.checkerframework.checker.initialization.qual.Initialized @org.checkerframework.checker
-   * .nullness.qual.MonotonicNonNull TimeZone tz2;
-   *
-   * @param line a line from the input file
-   * @return true if it contains the beginning of a multi-line annotation
+   * The algorithms that compute the differences between the lines of the human-written file and the
+   * lines of an .ajava file, for the DIFF matcher. MYERS, the default, is the Myers diff of
+   * java-diff-utils, which compares the lines as strings. FINGERPRINT computes the same diff over
+   * 64-bit fingerprints of the lines; see {@link FingerprintDiff}. HISTOGRAM is the histogram diff
+   * over the same fingerprints, which keeps the deltas short when WPI reorders or rewraps long
+   * blocks; see {@link HistogramDiff}.
    */
-  private static boolean checkGoogleFormatOpenCase(String line) {
-    if (line.length() == 0) {
-      return false;
-    }
-    String[] elements = line.trim().split(" ");
-    int n = elements.length;
-    if (n >= 1 && elements[n - 1].contains("@org")) {
-      String annotation = elements[n - 1];
-      annotation = trimParen(annotation);
-      String[] breaks = annotation.split("[.]");
-      int numberOfParts = breaks.length;
-      if (numberOfParts < 2) {
-        throw new RuntimeException("Invalid annotation form in line: " + line);
+  public enum DiffEngine {
+    MYERS {
+      @Override
+      LineDiff create(List<String> original) {
+        return revised -> DiffUtils.diff(original, revised);
       }
-      return (!breaks[numberOfParts - 2].equals("qual"));
-    }
-    return false;
-  }
-
-  /**
-   * If an annotation is too long, Google Java Format will make it multi-line. This method checks if
-   * a line contains the ending of those annotations.
-   *
-   * <p>For example, the second line contains the ending of MonotonicNonNull:
-   * static @org.checkerframework.checker.initialization.qual.Initialized @org.checkerframework.checker
-   * .nullness.qual.MonotonicNonNull TimeZone tz2;
-   *
-   * @param line a line from the input file
-   * @return true if it contains the ending of a multi-line annotation
-   */
-  private static boolean checkGoogleFormatCloseCase(String line) {
-    return (line.length() > 0 && firstIsDot(line));
-  }
-
-  /**
-   * This method checks the status of a line. If that line is the opening of a multi-line
-   * annotation, we call it "Open". If the line is the closing of a multi-line annotation, we call
-   * it "Close". And if the line does not contain any multi-line annotation, we call it "Complete".
-   *
-   * @param line a line from the input file
-   * @return the status of that line
-   */
-  private static LineStatus checkLineStatus(String line) {
-    if (checkGoogleFormatOpenCase(line)) {
-      return LineStatus.OPEN;
-    }
-    if (checkGoogleFormatCloseCase(line)) {
-      return LineStatus.CLOSE;
-    }
-    int openParen = 0;
-    int closeParen = 0;
-    for (int i = 0; i < line.length(); i++) {
-      char c = line.charAt(i);
-      if (c == '(') {
-        openParen++;
+    },
+    FINGERPRINT {
+      @Override
+      LineDiff create(List<String> original) {
+        return new FingerprintDiff(original, FingerprintDiff::computeMyersChanges);
       }
-      if (c == ')') {
-        closeParen++;
+    },
+    HISTOGRAM {
+      @Override
+      LineDiff create(List<String> original) {
+        return new FingerprintDiff(original, HistogramDiff::computeChanges);
       }
-    }
-    if (openParen < closeParen) {
-      return LineStatus.CLOSE;
-    }
-    if (openParen > closeParen) {
-      return LineStatus.OPEN;
-    }
-    return LineStatus.COMPLETE;
-  }
+    };
 
-  /**
-   * This method reads the input files, and changes all the multi-line annotations into a single
-   * line. This method returns a list, each element of that list is a line of the formatted file.
-   *
-   * @param fileContent a String containing all lines of the input file
-   * @return inputFiles a list containing lines of the formatted file
-   */
-  private static List<String> annoMultiToSingle(String fileContent) {
-    List<String> inputFiles = new ArrayList<>();
-    String[] fileLines = fileContent.split("\n");
-    String tempLine = "";
-    boolean inProgress = false;
-    for (String originalFileLine : fileLines) {
-      LineStatus status = checkLineStatus(originalFileLine);
-      if (inProgress) {
-        if (status == LineStatus.CLOSE) {
-          /*
-          There are two cases that an anotation is multi-line, either by Google Java Format or by default.
-          For the first case, it's easy to understand that we don't want any space in the middle of an annotation.
-          For the second case, it will be easier for the Diff Algorithm if there's no space in the bracket.
-           */
-          tempLine = tempLine + originalFileLine.trim();
-          inputFiles.add(tempLine);
-          inProgress = false;
-          tempLine = "";
-        } else {
-          originalFileLine = originalFileLine.trim();
-          tempLine = tempLine + originalFileLine;
-        }
-      } else if (status == LineStatus.COMPLETE || !originalFileLine.contains("@")) {
-        tempLine = tempLine + originalFileLine;
-        inputFiles.add(tempLine);
-        tempLine = "";
-      } else if (status == LineStatus.OPEN && originalFileLine.contains("@")) {
-        tempLine = tempLine + originalFileLine;
-        inProgress = true;
-      } else if (status == LineStatus.CLOSE) {
-        // This line is irrelevant: it contains an entire annotation and also
-        // happens to have unbalanced parentheses. This is fine and happens all
-        // the time, but doesn't matter for our purposes.
-        continue;
-      } else {
-        throw new RuntimeException(
-            "unexpected line status: " + status + " for line " + originalFileLine);
-      }
-    }
-    return inputFiles;
+    /**
+     * Creates the diff of a human-written file with this engine.
+     *
+     * @param original the normalized lines of the human-written file
+     * @return a diff that can be applied to each .ajava file of the human-written file
+     */
+    abstract LineDiff create(List<String> original);
   }
 
-  /**
-   * This method will put each annotation in a separate line.
-   *
-   * @param inputFiles a list containing lines of the input file after going through
-   *     quickReadAndFormat
-   * @return a list containing lines of the input files with each annotation in a separate line.
-   */
-  private static List eachAnnotationInOneSingleLine(List<String> inputFiles) {
-    List<String> formatted = new ArrayList<String>();
-    for (int i = 0; i < inputFiles.size(); i++) {
-      String line = inputFiles.get(i);
-      String temp[] = line.split(" ");
-      String resultLine = "";
-      boolean inProgress = false;
-      for (String element : temp) {
-        int indexOfAnno = element.indexOf('@');
-        int indexOfElement = line.indexOf(element);
-        if (indexOfAnno != -1
-            && !inProgress
-            && indexOfElement != -1
-            && indexOfElement < line.length()
-            && notInStringLiteral(indexOfElement, line)) {
-          if (resultLine.length() > 0) {
-            // sometimes the annotation can be in the middle of a declaration
-            formatted.add(resultLine + element.substring(0, indexOfAnno));
-            element = element.substring(indexOfAnno);
-          }
-          resultLine = "";
-          if (checkLineStatus(element) == LineStatus.COMPLETE) {
-            formatted.add(element);
-          } else {
-            resultLine = resultLine + " " + element;
-            inProgress = true;
-          }
-        } else {
-          resultLine = resultLine + " " + element;
-          if (inProgress && element.indexOf(')') != -1) {
-            formatted.add(resultLine);
-            inProgress = false;
-            resultLine = "";
-          }
-        }
-      }
-      formatted.add(" " + resultLine);
-    }
-    return formatted;
-  }
+  /** The prefix of the command-line option that selects the diff engine, e.g. "--diff=myers". */
+  static final String DIFF_ENGINE_OPTION = "--diff=";
 
   /**
-   * This method takes a line, which contains at least one annotation, and return the first
-   * annotation in that line.
-   *
-   * @param line a non-empty line containing at least one annotation
-   * @return the annotation which the line begins with
+   * The prefix of the command-line option that sets the directory of the cache of normalized files,
+   * e.g. "--cache=/tmp/iac-cache"; see {@link NormalizedFileCache}. Without it, every file is
+   * parsed.
    */
-  private static String getAnnos(String line) {
-    String[] temp = line.split(" ");
-    String result = "";
-    for (String word : temp) {
-      if (word.length() >= 1) {
-        int indexOfAnno = word.indexOf('@');
-        if (indexOfAnno != -1) {
-          int begin = indexOfAnno + 1;
-          result = word.substring(begin, word.length());
-          break;
-        }
-      }
-    }
-    return result;
-  }
+  static final String CACHE_OPTION = "--cache=";
 
   /**
-   * This method counts the number of annotations in a line
-   *
-   * @param line a line
-   * @return the number of annotations in that line
+   * The prefix of the command-line option that sets the bound on the size of the cache, in
+   * megabytes, e.g. "--cache-size=512".
    */
-  private static int countAnnos(String line) {
-    int count = 0;
-    boolean checkinString = true;
-    for (int i = 0; i < line.length(); i++) {
-      if (line.charAt(i) == '\"') {
-        if (checkinString) {
-          checkinString = false;
-        } else {
-          checkinString = true;
-        }
-      }
-      if (line.charAt(i) == '@' && checkinString) {
-        count++;
-      }
-    }
-    return count;
-  }
-
-  /**
-   * This method checks if a particular index in a line is not inside a string literal.
-   *
-   * <p>Assumes that the beginning of {@code line} is not already inside a string literal.
-   *
-   * @param line a line
-   * @param index index to check
-   * @return false if index is inside a string literal, true otherwise
-   */
-  private static boolean notInStringLiteral(@IndexFor("#2") int index, String line) {
-    int before = 0;
-    for (int i = 0; i < index; i++) {
-      if (line.charAt(i) == '\"') {
-        before++;
-      }
-    }
-    if (before % 2 == 0) {
-      return true;
-    }
-    return false;
-  }
-
-  /**
-   * This method replaces a particular character at an index of a string with a new symbol.
-   *
-   * @param line a line that needs to be modified
-   * @param index a valid index of that line, which is non-negative and less than the length of line
-   * @param symbol the new character
-   * @return the line with the character at index replaced by symbol
-   */
-  private static String replaceAtIndex(String line, @IndexFor("#1") int index, String symbol) {
-    String result = line;
-    String firstPart = line.substring(0, index);
-    if (index + 1 < result.length()) {
-      String secondPart = result.substring(index + 1);
-      result = firstPart + symbol + secondPart;
-    } else {
-      // the element at index is also the last element of the string
-      result = firstPart + symbol;
-    }
-
-    return result;
-  }
+  static final String CACHE_SIZE_OPTION = "--cache-size=";
 
   /**
    * This method formats annotations that contain arguments, such as
@@ -349,62 +123,111 @@ public class InferredAnnosCounter {
    * @param annotation an annotation to be formatted
    * @return formatted annotation
    */
-  private static String formatAnnotaionsWithArguments(String annotation) {
+  static String formatAnnotaionsWithArguments(String annotation) {
     // remove all whitespace inside of annotations with arguments, to prevent
     // whitespace-based diffs from producing incorrect results later
-    String result = annotation.replaceAll("\\s+", "");
+    StringBuilder result = new StringBuilder(annotation.length());
+    for (int i = 0; i < annotation.length(); i++) {
+      char c = annotation.charAt(i);
+      if (!isRegexWhitespace(c)) {
+        result.append(c);
+      }
+    }
     /*
-    First, we format cases involving matrix by changing all "}, {" to "|, |"
+    First, we format cases involving matrix by changing all "}, {" to "|, |". The characters are
+    replaced in place, so the positions of the other characters do not change and the scan only
+    moves forward.
      */
+    // the number of double quotes before quotesCountedUpTo, to know whether a "}," is in a string
+    int quotes = 0;
+    int quotesCountedUpTo = 0;
     int indexOfClose = result.indexOf("},");
     while (indexOfClose != -1) {
-      int indexOfOpen = result.indexOf('{', indexOfClose);
+      int indexOfOpen = result.indexOf("{", indexOfClose);
       // reaching the end of a line
       if (indexOfOpen < 0) {
-        return result;
+        return result.toString();
       }
       // When an annotation has multiple arguments, a }, .* { can occur
       // because of the argument names. In those cases, just continue the
       // loop.
-      if (result
-          .substring(indexOfClose, indexOfOpen)
-          .chars()
-          .anyMatch(c -> !(c == '{' || c == '}' || c == ','))) {
+      if (!onlyBracesAndCommas(result, indexOfClose, indexOfOpen)) {
         indexOfClose = result.indexOf("},", indexOfClose + 1);
         continue;
       }
-
-      if (notInStringLiteral(indexOfClose, result)) {
-        result = replaceAtIndex(result, indexOfClose, "|");
-        result = replaceAtIndex(result, indexOfOpen, "|");
-        indexOfClose = result.indexOf("},");
-      } else {
-        indexOfClose = result.indexOf("},", indexOfClose + 1);
+      while (quotesCountedUpTo < indexOfClose) {
+        if (result.charAt(quotesCountedUpTo) == '\"') {
+          quotes++;
+        }
+        quotesCountedUpTo++;
+      }
+      if (quotes % 2 == 0) {
+        result.setCharAt(indexOfClose, '|');
+        result.setCharAt(indexOfOpen, '|');
       }
+      indexOfClose = result.indexOf("},", indexOfClose + 1);
     }
     /*
     Second, we will remove all curly braces
      */
-    result = result.replace("{", "");
-    result = result.replace("}", "");
-    return result;
+    int length = 0;
+    for (int i = 0; i < result.length(); i++) {
+      char c = result.charAt(i);
+      if (c != '{' && c != '}') {
+        result.setCharAt(length, c);
+        length++;
+      }
+    }
+    result.setLength(length);
+    return result.toString();
   }
 
   /**
-   * This method trims out all the comments in all lines from an input file
+   * Puts a line into its canonical form if it is an annotation; see {@link
+   * AnnotationCanonicalizer}. Every annotation of both the human-written file and the .ajava files
+   * goes through this method, so that annotations that only differ in how their arguments are
+   * written are equal for the Diff algorithm.
    *
-   * @param filePath the absolute path of the file to be trimmed out comments
-   * @return the content of the file without comments
+   * @param line a trimmed line of a file after {@link AnnotationLexer#splitLines(String)} and
+   *     {@link #extractCheckerPackage(String)}
+   * @return the canonical form of the line if it is an annotation, and the line itself otherwise
    */
-  private static String ignoreComment(String filePath) {
-    try {
-      StaticJavaParser.getParserConfiguration().setAttributeComments(false);
-      CompilationUnit cu = StaticJavaParser.parse(new File(filePath));
-      return cu.toString();
-    } catch (Exception e) {
-      throw new RuntimeException(
-          "Could not read file: " + filePath + ". Check that it exists?" + e.getMessage());
+  static String canonicalizeLine(String line) {
+    // AnnotationLexer puts every annotation on a line of its own, so a line that starts with an
+    // '@' is a single annotation, unless it declares an annotation type.
+    if (!line.startsWith("@") || line.startsWith("@interface")) {
+      return line;
     }
+    return AnnotationCanonicalizer.canonicalize(line);
+  }
+
+  /**
+   * Returns true if the given character is whitespace according to the \\s character class of
+   * regular expressions.
+   *
+   * @param c a character
+   * @return true if c is a space, a tab, a line terminator, or a form feed
+   */
+  static boolean isRegexWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /**
+   * Returns true if the characters of the given range of a string are all curly braces or commas.
+   *
+   * @param str a string
+   * @param from the start of the range, inclusive
+   * @param to the end of the range, exclusive
+   * @return true if every character in the range is '{', '}', or ','
+   */
+  private static boolean onlyBracesAndCommas(CharSequence str, int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = str.charAt(i);
+      if (c != '{' && c != '}' && c != ',') {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -416,31 +239,76 @@ public class InferredAnnosCounter {
    * @param line a line that belongs to the input files
    * @return the same line with all the annotations being changed to the simple format.
    */
-  private static String extractCheckerPackage(String line) {
-    String[] temp = line.split(" ");
-    String result = line;
-    if (line.length() != 0) {
-      for (String word : temp) {
-        int indexOfPackage = word.indexOf("org.");
-        if (indexOfPackage != -1) {
-          int indexOfParen = word.indexOf('(');
-          if (indexOfParen != -1) {
-            String insideParen = word.substring(indexOfParen + 1, word.length());
-            if (insideParen.contains("org.")) {
-              String newInsideParen = extractCheckerPackage(insideParen);
-              String newWord = word.replace(insideParen, newInsideParen);
-              result = result.replace(word, newWord);
-              word = newWord;
-            }
-          }
-          String originalPart = word.substring(indexOfPackage, word.length());
-          originalPart = trimParen(originalPart);
-          String[] tempo = originalPart.split("[.]");
-          String tempResult = tempo[tempo.length - 1];
-          String newWord = word.replace(originalPart, tempResult);
-          result = result.replace(word, newWord);
-        }
+  static String extractCheckerPackage(String line) {
+    if (!line.contains("org.")) {
+      return line;
+    }
+    StringBuilder result = new StringBuilder(line.length());
+    int wordStart = 0;
+    while (true) {
+      int wordEnd = line.indexOf(' ', wordStart);
+      if (wordEnd == -1) {
+        result.append(extractCheckerPackageFromWord(line.substring(wordStart)));
+        return result.toString();
       }
+      result.append(extractCheckerPackageFromWord(line.substring(wordStart, wordEnd))).append(' ');
+      wordStart = wordEnd + 1;
+    }
+  }
+
+  /**
+   * Does the work of {@link #extractCheckerPackage(String)} for a single word of a line, that is, a
+   * part of the line that does not contain any space.
+   *
+   * @param word a word of a line
+   * @return the same word with all the annotations being changed to the simple format
+   */
+  private static String extractCheckerPackageFromWord(String word) {
+    int indexOfPackage = word.indexOf("org.");
+    if (indexOfPackage == -1) {
+      return word;
+    }
+    int indexOfParen = word.indexOf('(');
+    if (indexOfParen != -1) {
+      String insideParen = word.substring(indexOfParen + 1, word.length());
+      if (insideParen.contains("org.")) {
+        word = word.replace(insideParen, extractCheckerPackageFromWord(insideParen));
+      }
+    }
+    String originalPart = word.substring(indexOfPackage, word.length());
+    originalPart = trimParen(originalPart);
+    String[] tempo = originalPart.split("[.]");
+    String tempResult = tempo[tempo.length - 1];
+    return word.replace(originalPart, tempResult);
+  }
+
+  /**
+   * Returns the name of the checker that produced an .ajava file. WPI names the .ajava file of
+   * "Foo.java" "Foo-(checker name).ajava", for example
+   * "Foo-org.checkerframework.checker.resourceleak.ResourceLeakChecker.ajava".
+   *
+   * @param ajava an .ajava file
+   * @return the part of its file name after the first dash and without the extension, or the whole
+   *     file name without the extension if it does not contain a dash
+   */
+  static String checkerName(Path ajava) {
+    String fileName = String.valueOf(ajava.getFileName());
+    if (fileName.endsWith(".ajava")) {
+      fileName = fileName.substring(0, fileName.length() - ".ajava".length());
+    }
+    return fileName.substring(fileName.indexOf('-') + 1);
+  }
+
+  /**
+   * Returns the names of the checkers that produced some .ajava files.
+   *
+   * @param ajavas some .ajava files
+   * @return the name of the checker of each .ajava file (see {@link #checkerName(Path)}), in order
+   */
+  static List<String> checkerNames(List<Path> ajavas) {
+    List<String> result = new ArrayList<>(ajavas.size());
+    for (Path ajava : ajavas) {
+      result.add(checkerName(ajava));
     }
     return result;
   }
@@ -458,7 +326,7 @@ public class InferredAnnosCounter {
    * @param anno the annotation which will be trimmed
    * @return that annotation without the parenthesized part
    */
-  private static String trimParen(String anno) {
+  static String trimParen(String anno) {
     int para = anno.indexOf("(");
     if (para == -1) {
       return anno;
@@ -467,76 +335,40 @@ public class InferredAnnosCounter {
   }
 
   /**
-   * This method returns a List containing all the annotations belonging to a line (with the
-   * {@literal @} symbol stripped off each annotation).
+   * Given a parsed input file, this method returns a Map of annotations that should be ignored in
+   * that file and their corresponding quantity. The main reason we ignore some annotations is that
+   * they are within a scope of SuprressWarnings. More precisely, an annotation is ignored if
+   * RemoveAnnotationsForInference would keep it; see {@link WarningSuppression}.
    *
-   * @param str a line
-   * @return a Linked List containing all annotations of str.
+   * @param file the parsed input file
+   * @param registry the tracked annotations
+   * @return a Map with the name of the annotation to ignore as key and the number of that
+   *     annotation in the file as value
    */
-  private static List extractString(String str) {
-    List<String> result = new ArrayList<String>();
-    int countAnno = countAnnos(str);
-    String temp = str;
-    for (int i = 0; i < countAnno; i++) {
-      int index1 = temp.indexOf('@');
-      if (index1 == -1) {
-        throw new RuntimeException(
-            "The extractString method relies on the countAnnos method. Either the countAnnos method is wrong"
-                + "or it was not called properly");
-      }
-      String tempAnno = getAnnos(temp);
-      if (notInStringLiteral(index1, temp)) {
-        if (tempAnno.contains("(")) {
-          if (temp.contains(")")) {
-            tempAnno = temp.substring(index1 + 1, temp.indexOf(')') + 1);
-          } else {
-            tempAnno = temp.substring(index1 + 1);
-          }
-          result.add(tempAnno);
-        } else {
-          result.add(tempAnno);
-        }
-      }
-      temp = temp.substring(index1 + 1);
-    }
-    return result;
+  public static Map<String, Integer> returnListOfAnnosToIgnore(
+      ParsedFile file, QualifierRegistry registry) {
+    return returnListOfAnnosToIgnore(
+        file, registry, WarningSuppression.hasSuppressions(file.getAnnotations()));
   }
 
   /**
-   * Given an input file, this method returns a Map of annotations that should be ignored in that
-   * file and their corresponding quantity. The main reason we ignore some annotations is that they
-   * are within a scope of SuprressWarnings.
+   * Does the work of {@link #returnListOfAnnosToIgnore(ParsedFile, QualifierRegistry)}, with the
+   * result of {@link WarningSuppression#hasSuppressions(List)} for the file already known.
    *
-   * @param filePath the path of the input file
+   * @param file the parsed input file
+   * @param registry the tracked annotations
+   * @param checkScopes whether the file contains any annotation that suppresses warnings. If not,
+   *     only the annotations that WPI never removes anywhere are ignored.
    * @return a Map with the name of the annotation to ignore as key and the number of that
    *     annotation in the file as value
    */
-  public static Map<String, Integer> returnListOfAnnosToIgnore(String filePath) {
-    String tempDirectoryFile = "";
+  static Map<String, Integer> returnListOfAnnosToIgnore(
+      ParsedFile file, QualifierRegistry registry, boolean checkScopes) {
     Map<String, Integer> listOfAnnoToIgnore = new HashMap<>();
-    try {
-      Path file = Paths.get(filePath);
-      Path tempDir = Files.createTempDirectory("mytemp");
-      Path tempFile = tempDir.resolve(file.getFileName());
-      Files.copy(file, tempFile);
-      removePossiblePackage(tempFile.toString());
-      RemoveAnnotationsForInference.main(new String[] {tempDir.toString()});
-      tempDirectoryFile = tempFile.toString();
-    } catch (IOException e) {
-      throw new RuntimeException("Could not read file: " + filePath + ". Check that it exists?");
-    }
-    List<String> tempFileWithOnlySingleLineAnno =
-        annoMultiToSingle(ignoreComment(tempDirectoryFile));
-    List<String> tempFileWithEachAnnotationOnASingleLine =
-        eachAnnotationInOneSingleLine(tempFileWithOnlySingleLineAnno);
-    for (String tempFileLine : tempFileWithEachAnnotationOnASingleLine) {
-      tempFileLine = extractCheckerPackage(tempFileLine);
-      // this line is an annotation. So we need to clear all preceding and succeeding space.
-      tempFileLine = tempFileLine.trim();
-      String specialAnno = trimParen(tempFileLine);
-      // the fact that this if statement's condition is true means that this line contains exactly
-      // one CF annotation and nothing else.
-      if (tempFileLine.indexOf('@') == 0) {
+    for (AnnotationExpr anno : file.getAnnotations()) {
+      if (WarningSuppression.isKept(anno, registry, checkScopes)) {
+        // use the same format as the lines of the original file, e.g. "@Owning"
+        String specialAnno = extractCheckerPackage("@" + anno.getNameAsString());
         int numberOfAnno = listOfAnnoToIgnore.getOrDefault(specialAnno, 0);
         listOfAnnoToIgnore.put(specialAnno, numberOfAnno + 1);
       }
@@ -544,34 +376,6 @@ public class InferredAnnosCounter {
     return listOfAnnoToIgnore;
   }
 
-  /**
-   * This method removes the first line of a Java file if that line declares the package of the
-   * file. The reason we do this is that RemoveAnnotationsForInference requires the file to be in a
-   * directory with the exact structure as the package line declares. To achieve that is too
-   * difficult, so we simply remove that line to make the file looks like it belongs to no package.
-   * For InferredAnnosCounter, we only take one Java file into consideration at a time, so this
-   * method will not make the program go wrong because of two Java files with the same name but in
-   * two different package
-   *
-   * @param filePath the path of the file to remove possible package line
-   */
-  public static void removePossiblePackage(String filePath) {
-    // fileContents will have no comments or blank space at the beginning
-    String fileContents = ignoreComment(filePath);
-    String[] fileLines = fileContents.split("\n");
-    String firstLine = fileLines[0];
-    if (!firstLine.contains("package")) {
-      return;
-    }
-    fileContents = fileContents.replace(firstLine, "");
-    try (FileWriter writer = new FileWriter(filePath)) {
-      writer.append(fileContents);
-      writer.flush();
-    } catch (IOException e) {
-      throw new RuntimeException();
-    }
-  }
-
   /**
    * Return true if there is a mismatched annotation between the pair of input deltas. The way we
    * check is that, if at least one of the deltas has the CHANGE type and none of them contains only
@@ -619,101 +423,345 @@ public class InferredAnnosCounter {
    * <p>-param args the files. The first element is the original source file. All remaining elements
    * should be corresponding .ajava files produced by WPI. This program assumes that all inputs have
    * been converted to some unified formatting style to eliminate unnecessary changes (e.g., by
-   * running google java format on each input).
+   * running google java format on each input). The option "--matcher=ast" selects the AST-based
+   * matcher instead of the default diff-based one, and the options "--diff=fingerprint" and
+   * "--diff=histogram" select the engine of the diff-based matcher. The option "--cache=DIR" keeps
+   * the normalized files in DIR for later runs, and "--cache-size=MB" bounds the size of DIR.
    */
   public static void main(String[] args) {
-    int fileCount = 0;
-    List<String> checkerPackage = new ArrayList<String>();
-    File file1 = new File("type-qualifiers.txt");
-    try (FileReader fr = new FileReader(file1)) {
-      BufferedReader br = new BufferedReader(fr);
-      String str;
-      while ((str = br.readLine()) != null) {
-        // the extractCheckerPackage will keep the char element of the string, such as '@' or '"'.
-        // So we need to add a
-        // space here since the element in this txt does not have a '@'.
-        str = extractCheckerPackage('@' + str);
-        str = str.replaceAll("\\s", "");
-        checkerPackage.add(str);
+    Matcher matcher = Matcher.DIFF;
+    DiffEngine engine = DiffEngine.MYERS;
+    Path cacheDirectory = null;
+    long cacheMegabytes = NormalizedFileCache.DEFAULT_MAX_MEGABYTES;
+    List<Path> files = new ArrayList<>(args.length);
+    for (String arg : args) {
+      if (arg.startsWith(MATCHER_OPTION)) {
+        matcher = parseMatcher(arg);
+      } else if (arg.startsWith(DIFF_ENGINE_OPTION)) {
+        engine = parseDiffEngine(arg);
+      } else if (arg.startsWith(CACHE_OPTION)) {
+        cacheDirectory = Paths.get(arg.substring(CACHE_OPTION.length()));
+      } else if (arg.startsWith(CACHE_SIZE_OPTION)) {
+        cacheMegabytes = Long.parseLong(arg.substring(CACHE_SIZE_OPTION.length()));
+      } else {
+        files.add(Paths.get(arg));
       }
-    } catch (Exception e) {
-      throw new RuntimeException("Could not read type-qualifiers.txt, check if it exists?");
     }
-
-    if (args.length < 1) {
+    if (files.isEmpty()) {
       throw new RuntimeException("Provide at least one .java file");
     }
+    QualifierRegistry registry = QualifierRegistry.getDefault();
+    AnnotationCounts counts =
+        count(
+            files.get(0),
+            files.subList(1, files.size()),
+            matcher,
+            engine,
+            registry,
+            openCache(cacheDirectory, cacheMegabytes, registry));
+    System.out.println();
+    printCounts(counts, System.out);
+  }
 
-    // These variables are maintained throughout:
+  /**
+   * Opens the cache of normalized files selected by the "--cache=" option.
+   *
+   * @param directory the value of the "--cache=" option, or null if it was not given
+   * @param megabytes the value of the "--cache-size=" option, or its default
+   * @param registry the tracked annotations
+   * @return the cache, or null if there is none
+   */
+  static @Nullable NormalizedFileCache openCache(
+      @Nullable Path directory, long megabytes, QualifierRegistry registry) {
+    return directory == null
+        ? null
+        : new NormalizedFileCache(directory, megabytes * 1024 * 1024, registry);
+  }
 
-    // The original file, reformatted to remove comments and clean up annotation names (i.e., remove
-    // package names),
-    // etc.
-    List<String> originalFile = new ArrayList<>();
-    // specific annotations and the number of computer-written files missing them
-    Map<String, Integer> annoLocate = new HashMap<>();
-    // the name of the types of annotation and their numbers in the human-written file
-    Map<String, Integer> annoCount = new HashMap<>();
-    /* the name of the types of annotations and their "correct" numbers (meaning the number of annotations of that
-    type not missed by computer-written files) */
-    Map<String, Integer> annoSimilar = new HashMap<>();
-    Map<String, Integer> listOfAnnoToIgnore = returnListOfAnnosToIgnore(args[0]);
-    // the number of lines in the original file
-    int originalFileLineCount = 0;
-    List<String> inputFileWithOnlySingleLineAnno = annoMultiToSingle(ignoreComment(args[0]));
-    List<String> inputFileWithEachAnnoOnOneLine =
-        eachAnnotationInOneSingleLine(inputFileWithOnlySingleLineAnno);
-    int originalFileLineIndex = 0;
-    // Read the original file once to determine the annotations that written by the human.
-    for (String originalFileLine : inputFileWithEachAnnoOnOneLine) {
-      originalFileLine = extractCheckerPackage(originalFileLine);
-      // since it's too difficult to keep the length of whitespace at the beginning of each line the
-      // same
-      originalFileLine = originalFileLine.trim();
-      String specialAnno = trimParen(originalFileLine);
-      // the fact that this if statement's condition is true means that this line contains exactly
-      // one CF annotation and nothing else.
-      if (checkerPackage.contains(specialAnno)) {
-        originalFileLine = formatAnnotaionsWithArguments(originalFileLine);
-        int numberOfAnno = annoCount.getOrDefault(specialAnno, 0);
-        annoCount.put(specialAnno, numberOfAnno + 1);
-        annoSimilar.put(specialAnno, 0);
-        // we want the keys in the map annoLocate has this following format: type_position
-        annoLocate.put(originalFileLine + "_" + originalFileLineIndex, 0);
+  /**
+   * Parses the value of the "--matcher=" option.
+   *
+   * @param arg a command-line argument that starts with "--matcher="
+   * @return the selected matcher
+   */
+  static Matcher parseMatcher(String arg) {
+    String name = arg.substring(arg.indexOf('=') + 1);
+    for (Matcher matcher : Matcher.values()) {
+      if (matcher.name().equalsIgnoreCase(name)) {
+        return matcher;
       }
-      if (originalFileLine.length() != 0) {
-        originalFile.add(originalFileLine);
-        originalFileLineIndex++;
+    }
+    throw new RuntimeException("Unknown matcher: " + name + ". Use diff or ast.");
+  }
+
+  /**
+   * Parses the value of the "--diff=" option.
+   *
+   * @param arg a command-line argument that starts with "--diff="
+   * @return the selected diff engine
+   */
+  static DiffEngine parseDiffEngine(String arg) {
+    String name = arg.substring(arg.indexOf('=') + 1);
+    for (DiffEngine engine : DiffEngine.values()) {
+      if (engine.name().equalsIgnoreCase(name)) {
+        return engine;
       }
-      originalFileLineCount = originalFileLineIndex;
     }
-    // Iterate over the arguments from 1 to the end and diff each with the original,
-    // putting the results into diffs.
-    List<Patch<String>> diffs = new ArrayList<>(args.length - 1);
-    // Iterate over the arguments from 1 to the end and diff each with the original,
-    // putting the results into diffs.
-    for (int i = 1; i < args.length; ++i) {
-      List<String> inputFileWithOnlySingleLineAnno2 = annoMultiToSingle(ignoreComment(args[i]));
-      List<String> inputFileWithEachAnnoOnOneLine2 =
-          eachAnnotationInOneSingleLine(inputFileWithOnlySingleLineAnno2);
-      List<String> newFile = new ArrayList<>();
-      for (String ajavaFileLine : inputFileWithEachAnnoOnOneLine2) {
-        // if the condition is true, this line contains only one single annotation and nothing else.
-        if (ajavaFileLine.contains("@org")) {
-          ajavaFileLine = formatAnnotaionsWithArguments(ajavaFileLine);
-        }
-        ajavaFileLine = extractCheckerPackage(ajavaFileLine);
-        ajavaFileLine = ajavaFileLine.trim();
-        if (ajavaFileLine.length() != 0) {
-          newFile.add(ajavaFileLine);
-        }
+    throw new RuntimeException(
+        "Unknown diff engine: " + name + ". Use myers, fingerprint, or histogram.");
+  }
+
+  /**
+   * Prints one line per annotation type in the format "@Owning got 1/2", where 1 is the number of
+   * annotations of that type that were inferred and 2 is the number of annotations of that type in
+   * the human-written file. Annotation types whose annotations are all within the scope of some
+   * SuppressWarnings are not printed.
+   *
+   * @param counts the result of {@link #count(Path, List)} for some file
+   * @param out the stream to print to
+   */
+  public static void printCounts(AnnotationCounts counts, PrintStream out) {
+    for (AnnotationCounts.Count count : counts.getCounts()) {
+      // totalCount being equal to 0 meaning that all of the annotations with this type are within
+      // the bound of some SuppressWarnings
+      if (count.getTotal() != 0) {
+        out.println(count);
       }
-      diffs.add(DiffUtils.diff(originalFile, newFile));
     }
-    // Iterate over the list of diffs and process each. There must be args.length - 1 diffs, since
-    // there is one diff between args[0] and each other element of args.
-    for (int i = 0; i < args.length - 1; i++) {
-      Patch<String> patch = diffs.get(i);
+  }
+
+  /**
+   * Counts the annotations of a single human-written file that were inferred by WPI. The tracked
+   * annotations are read from type-qualifiers.txt in the working directory the first time this
+   * method is called.
+   *
+   * <p>This method does not print anything and does not keep any state between calls, so it can be
+   * called from several threads at once, for example to process many files in parallel.
+   *
+   * @param original the human-written Java file
+   * @param ajavas the corresponding .ajava files produced by WPI. The list can be empty.
+   * @return the counts for each type of annotation in the human-written file
+   */
+  public static AnnotationCounts count(Path original, List<Path> ajavas) {
+    return count(original, ajavas, Matcher.DIFF);
+  }
+
+  /**
+   * Counts the annotations of a single human-written file that were inferred by WPI, using the
+   * given matcher. Otherwise the same as {@link #count(Path, List)}.
+   *
+   * @param original the human-written Java file
+   * @param ajavas the corresponding .ajava files produced by WPI. The list can be empty.
+   * @param matcher the algorithm that matches the annotations of the files
+   * @return the counts for each type of annotation in the human-written file
+   */
+  public static AnnotationCounts count(Path original, List<Path> ajavas, Matcher matcher) {
+    return count(original, ajavas, matcher, DiffEngine.MYERS);
+  }
+
+  /**
+   * Counts the annotations of a single human-written file that were inferred by WPI, using the
+   * given matcher and diff engine. Otherwise the same as {@link #count(Path, List)}.
+   *
+   * @param original the human-written Java file
+   * @param ajavas the corresponding .ajava files produced by WPI. The list can be empty.
+   * @param matcher the algorithm that matches the annotations of the files
+   * @param engine the algorithm that diffs the files, if matcher is DIFF
+   * @return the counts for each type of annotation in the human-written file
+   */
+  public static AnnotationCounts count(
+      Path original, List<Path> ajavas, Matcher matcher, DiffEngine engine) {
+    return count(original, ajavas, matcher, engine, QualifierRegistry.getDefault());
+  }
+
+  /**
+   * Reads the content of an input file.
+   *
+   * @param file the path of the file
+   * @return the bytes of the file
+   */
+  private static byte[] readBytes(Path file) {
+    try {
+      return Files.readAllBytes(file);
+    } catch (IOException e) {
+      throw new RuntimeException(
+          "Could not read file: " + file + ". Check that it exists?" + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the normalized form of a file, from the cache if there is one.
+   *
+   * @param file a human-written file or an .ajava file
+   * @param content the bytes of file, or null if they have not been read yet
+   * @param registry the tracked annotations
+   * @param cache the cache of normalized files, or null to parse the file
+   * @param humanWritten true if file is a human-written file and false if it is an .ajava file
+   * @return the normalized file
+   */
+  private static NormalizedFile normalize(
+      Path file,
+      byte @Nullable [] content,
+      QualifierRegistry registry,
+      @Nullable NormalizedFileCache cache,
+      boolean humanWritten) {
+    if (cache == null) {
+      return NormalizedFile.create(ParsedFile.parse(file), registry, humanWritten);
+    }
+    return cache.get(file, content == null ? readBytes(file) : content, registry, humanWritten);
+  }
+
+  /**
+   * Returns the lines of a file in the form in which they are diffed: with each annotation on a
+   * line of its own, with simple annotation names, without leading and trailing whitespace, with
+   * the arguments of annotations in canonical form, and without empty lines.
+   *
+   * @param file a parsed .ajava or Java file
+   * @return the normalized lines of the file
+   */
+  static List<String> normalizeLines(ParsedFile file) {
+    return normalizeLines(file.getText());
+  }
+
+  /**
+   * Returns the lines of some Java code in the form in which they are diffed. See {@link
+   * #normalizeLines(ParsedFile)}.
+   *
+   * @param text some Java code without comments, as printed by JavaParser
+   * @return the normalized lines of the code
+   */
+  static List<String> normalizeLines(String text) {
+    List<String> result = new ArrayList<>();
+    for (String line : AnnotationLexer.splitLines(text)) {
+      line = extractCheckerPackage(line);
+      line = line.trim();
+      line = canonicalizeLine(line);
+      if (line.length() != 0) {
+        result.add(line);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Counts the annotations of a single human-written file that were inferred by WPI, without a
+   * cache. See {@link #count(Path, List, Matcher, DiffEngine, QualifierRegistry,
+   * NormalizedFileCache)}.
+   *
+   * @param original the human-written Java file
+   * @param ajavas the corresponding .ajava files produced by WPI
+   * @param matcher the algorithm that matches the annotations of the files
+   * @param engine the algorithm that diffs the files, if matcher is DIFF
+   * @param registry the tracked annotations
+   * @return the counts for each type of annotation in the human-written file
+   */
+  static AnnotationCounts count(
+      Path original,
+      List<Path> ajavas,
+      Matcher matcher,
+      DiffEngine engine,
+      QualifierRegistry registry) {
+    return count(original, ajavas, matcher, engine, registry, null);
+  }
+
+  /**
+   * Counts the annotations of a single human-written file that were inferred by WPI. This is the
+   * work done by a single invocation of {@link #main(String[])}; the batch mode in {@link
+   * BatchCounter} calls it once per Java file.
+   *
+   * @param original the human-written Java file
+   * @param ajavas the corresponding .ajava files produced by WPI
+   * @param matcher the algorithm that matches the annotations of the files
+   * @param engine the algorithm that diffs the files, if matcher is DIFF
+   * @param registry the tracked annotations
+   * @param cache the cache of normalized files, or null to parse every file. Only the DIFF matcher
+   *     uses it.
+   * @return the counts for each type of annotation in the human-written file
+   */
+  static AnnotationCounts count(
+      Path original,
+      List<Path> ajavas,
+      Matcher matcher,
+      DiffEngine engine,
+      QualifierRegistry registry,
+      @Nullable NormalizedFileCache cache) {
+    // Most files do not contain any tracked annotation. Their result is empty, which a scan of the
+    // bytes of the file shows without parsing it or any of the .ajava files.
+    byte[] originalContent = readBytes(original);
+    if (!registry.mayContainTrackedQualifier(originalContent)) {
+      return new AnnotationCounts(Collections.emptyList(), false);
+    }
+    if (matcher == Matcher.AST) {
+      ParsedFile originalParsed = ParsedFile.parse(original);
+      // WPI does not remove annotations within the scope of a SuppressWarnings, so they are
+      // ignored. Finding the scopes is only needed if the file contains some SuppressWarnings.
+      boolean checkScopes = WarningSuppression.hasSuppressions(originalParsed.getAnnotations());
+      return AnnotationSiteMatcher.count(
+          originalParsed,
+          ajavas,
+          registry,
+          returnListOfAnnosToIgnore(originalParsed, registry, checkScopes),
+          checkScopes);
+    }
+    // Each file is parsed at most once: the ignored annotations, the lines to diff, and the keys of
+    // the annotations all come from the same parse, or from the cache.
+    NormalizedFile originalNormalized = normalize(original, originalContent, registry, cache, true);
+    Map<String, Integer> listOfAnnoToIgnore = originalNormalized.getIgnored();
+    boolean checkScopes = originalNormalized.isSuppressionAnalyzed();
+    // The original file, reformatted to remove comments and clean up annotation names (i.e., remove
+    // package names), etc.
+    List<String> originalFile = originalNormalized.getLines();
+    // the tracked annotations, keyed by their line in originalFile, and the computer-written files
+    // missing each of them
+    AnnotationTally tally =
+        new AnnotationTally(registry, originalFile.size(), checkerNames(ajavas));
+    for (int i = 0; i < originalNormalized.annotationCount(); i++) {
+      int qualifierId = registry.getId(originalNormalized.annotationName(i));
+      if (qualifierId != -1) {
+        tally.addAnnotationAt(originalNormalized.annotationLine(i), qualifierId);
+      }
+    }
+    // Whatever the engine needs from the original file, such as fingerprints, is computed once,
+    // for all the .ajava files.
+    LineDiff lineDiff = null;
+    // A large file is diffed one member at a time, in parallel, against each .ajava file that has
+    // the same members.
+    MemberChunks originalChunks =
+        MemberChunks.shouldSplit(originalFile.size())
+            ? MemberChunks.split(originalNormalized.getParsedFile(), originalFile)
+            : null;
+    MemberDiff memberDiff =
+        originalChunks == null ? null : new MemberDiff(engine, originalFile, originalChunks);
+    // The keys of the tracked annotations of the original file: if an .ajava file has all of them,
+    // at the same sites, then it infers every annotation and no diff with it is needed.
+    Map<String, Integer> originalKeys = originalNormalized.getTrackedKeys();
+    // Iterate over the arguments from 1 to the end and diff each with the original. Each diff is
+    // processed as soon as it is computed, so that the lines of only one .ajava file are kept in
+    // memory at a time. Every .ajava file is examined, even after one that infers every
+    // annotation, so that the annotations can be attributed to each checker.
+    for (int ajavaIndex = 0; ajavaIndex < ajavas.size(); ajavaIndex++) {
+      Path ajava = ajavas.get(ajavaIndex);
+      NormalizedFile ajavaNormalized = normalize(ajava, null, registry, cache, false);
+      if (AnnotationSiteMatcher.containsAll(ajavaNormalized.getTrackedKeys(), originalKeys)) {
+        continue;
+      }
+      List<String> newFile = ajavaNormalized.getLines();
+      MemberChunks ajavaChunks =
+          originalChunks == null
+              ? null
+              : MemberChunks.split(ajavaNormalized.getParsedFile(), newFile);
+      Patch<String> patch;
+      if (memberDiff != null
+          && originalChunks != null
+          && ajavaChunks != null
+          && originalChunks.isAlignedWith(ajavaChunks)) {
+        patch = memberDiff.diff(newFile, ajavaChunks);
+      } else {
+        if (lineDiff == null) {
+          lineDiff = engine.create(originalFile);
+        }
+        patch = lineDiff.diff(newFile);
+      }
       List<AbstractDelta<String>> listOfDelta = patch.getDeltas();
       for (int currPointer = 0; currPointer < listOfDelta.size(); currPointer++) {
         AbstractDelta<String> delta = listOfDelta.get(currPointer);
@@ -726,71 +774,47 @@ public class InferredAnnosCounter {
           AbstractDelta<String> nextDelta = listOfDelta.get(nextPointer);
           if (hasMismatchAnnotationInTheMiddle(delta, nextDelta)) {
             int indexOfMismatched = delta.getSource().getPosition() + sourceLines.size();
-            String mismatchName = originalFile.get(indexOfMismatched);
-            if (mismatchName.indexOf("@") == 0) {
-              String mismatchFullForm = mismatchName + "_" + indexOfMismatched;
-              int value = annoLocate.get(mismatchFullForm);
-              annoLocate.put(mismatchFullForm, value + 1);
+            if (tally.isAnnotationAt(indexOfMismatched)) {
+              tally.addMissAt(indexOfMismatched, ajavaIndex);
             }
           }
         }
         // get the position of the first line entry in the delta
         int position = delta.getSource().getPosition();
-        String result = "";
         for (int j = 0; j < sourceLines.size(); j++) {
+          // this is the position of the current line entry
+          int localPosition = position + j;
+          if (!tally.isAnnotationAt(localPosition)) {
+            continue;
+          }
           String element = sourceLines.get(j);
-          if (element.contains("@")) {
-            // in case there are other components in the string element other than the
-            // annotation itself
-            List<String> annoList = extractString(element);
-            for (String anno : annoList) {
-              // this is the position of the current line entry
-              int localPosition = position + j;
-              result = "@" + anno + "_" + localPosition;
-              // update the data of AnnoLocate
-              if (annoLocate.containsKey(result)) {
-                int value = annoLocate.get(result);
-                annoLocate.put(result, value + 1);
-              }
+          // in case there are other components in the string element other than the annotation
+          // itself
+          for (AnnotationLexer.Token anno : AnnotationLexer.lex(element)) {
+            if (anno.text().equals(element)) {
+              tally.addMissAt(localPosition, ajavaIndex);
             }
           }
         }
       }
     }
 
-    // Update the data of AnnoSimilar.
-    for (Map.Entry<String, Integer> me : annoLocate.entrySet()) {
-      String annoName = me.getKey();
-      /* If the number of computer-written code missing that element is less than the total number of codes written
-      by computer, the at least one of those computer-written code must have gotten the annotation correct. */
-      if (me.getValue() < args.length - 1) {
-        // For example, if we have @Option_345, we will only need "@Option" since we want the
-        // general type here.
-        int index = annoName.indexOf("_");
-        if (index >= 0) {
-          annoName = annoName.substring(0, index);
-        }
-        annoName = trimParen(annoName);
-        int value = annoSimilar.get(annoName);
-        value = value + 1;
-        annoSimilar.put(annoName, value);
-      }
-    }
-
-    // Output the results.
-    System.out.println();
-    for (Map.Entry<String, Integer> e : annoCount.entrySet()) {
-      int totalCount = e.getValue();
-      String value = e.getKey();
-      if (listOfAnnoToIgnore.containsKey(value)) {
-        totalCount = totalCount - listOfAnnoToIgnore.get(value);
-      }
-      int correctCount = annoSimilar.get(value);
-      // totalCount being equal to 0 meaning that all of the annotations with this type are within
-      // the bound of some SuppressWarnings
-      if (totalCount != 0) {
-        System.out.println(value + " got " + correctCount + "/" + totalCount);
+    tally.resolveMisses();
+    List<MissedAnnotation> missed = new ArrayList<>();
+    for (int line : tally.getMissedLines()) {
+      int i = originalNormalized.annotationIndexAt(line);
+      String site = originalNormalized.annotationSite(i);
+      // an annotation in the scope of some SuppressWarnings is not counted, so it is not missed
+      if (site != null) {
+        Range range = originalNormalized.annotationRange(i);
+        missed.add(
+            new MissedAnnotation(
+                originalNormalized.annotationName(i),
+                range == null ? 0 : range.begin.line,
+                range == null ? 0 : range.begin.column,
+                site));
       }
     }
+    return tally.toCounts(listOfAnnoToIgnore, checkScopes, missed);
   }
 }
@@ -0,0 +1,21 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.difflib.patch.Patch;
+import java.util.List;
+
+/**
+ * The differences between the normalized lines of a human-written file and those of its .ajava
+ * files. An instance is created for one human-written file by {@link
+ * InferredAnnosCounter.DiffEngine#create(List)}, and then used for each of its .ajava files, so
+ * that work on the human-written file, such as fingerprinting its lines, is done only once.
+ */
+interface LineDiff {
+
+  /**
+   * Computes the differences between the human-written file and an .ajava file.
+   *
+   * @param revised the lines of the .ajava file, after normalization
+   * @return the patch that turns the lines of the human-written file into revised
+   */
+  Patch<String> diff(List<String> revised);
+}
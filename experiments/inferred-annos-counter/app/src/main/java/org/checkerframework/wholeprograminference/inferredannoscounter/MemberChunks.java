@@ -0,0 +1,171 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.nodeTypes.NodeWithSimpleName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The normalized lines of a file (see {@link InferredAnnosCounter#normalizeLines(ParsedFile)}),
+ * split at the boundaries of the members of its top-level types. A file with K members has 2K + 1
+ * segments: the lines before the first member (the package, the imports, and the header of the
+ * type), then each member and the lines after it, up to the next member. When a human-written file
+ * and an .ajava file have the same members, the segments of the two files can be diffed pairwise,
+ * which bounds the cost of each diff by the size of a member and lets the segments of one large
+ * file be diffed in parallel.
+ *
+ * <p>The members come from the parse that the counter already does. The lines of each member are
+ * found in the lines of the file by printing the member on its own, which is checked against the
+ * lines of the file, so a split always covers the file exactly.
+ */
+final class MemberChunks {
+
+  /**
+   * The minimum number of normalized lines of a human-written file for it to be split. Smaller
+   * files are diffed whole, since splitting them would cost more than it saves.
+   */
+  static final int MIN_LINES_TO_SPLIT = 2000;
+
+  /**
+   * Returns true if a human-written file with the given number of normalized lines should be split.
+   * This depends on the file alone, and not on the number of threads, so that the counts are the
+   * same whatever the number of threads: diffing the segments one by one is not guaranteed to give
+   * the same deltas as diffing the whole file.
+   *
+   * @param lineCount the number of normalized lines of a human-written file
+   * @return true if the file should be split
+   */
+  static boolean shouldSplit(int lineCount) {
+    return lineCount >= MIN_LINES_TO_SPLIT;
+  }
+
+  /**
+   * A key for each member, in order, which identifies the member in both the human-written file and
+   * the .ajava files: the kind of the member, its name, and for methods and constructors the number
+   * of parameters.
+   */
+  private final List<String> keys;
+
+  /**
+   * The boundaries of the segments: segment s is the lines from bounds[s] (inclusive) to bounds[s +
+   * 1] (exclusive). The length is 2 * keys.size() + 2.
+   */
+  private final int[] bounds;
+
+  /**
+   * Creates a new MemberChunks.
+   *
+   * @param keys the key of each member
+   * @param bounds the boundaries of the segments
+   */
+  private MemberChunks(List<String> keys, int[] bounds) {
+    this.keys = keys;
+    this.bounds = bounds;
+  }
+
+  /**
+   * Splits the normalized lines of a file at the boundaries of the members of its top-level types.
+   *
+   * @param file the parsed file
+   * @param lines the normalized lines of file
+   * @return the split, or null if the lines of some member could not be found in lines
+   */
+  static @Nullable MemberChunks split(ParsedFile file, List<String> lines) {
+    List<String> keys = new ArrayList<>();
+    List<Integer> bounds = new ArrayList<>();
+    bounds.add(0);
+    int cursor = 0;
+    for (TypeDeclaration<?> type : file.getCompilationUnit().getTypes()) {
+      for (BodyDeclaration<?> member : type.getMembers()) {
+        List<String> memberLines = InferredAnnosCounter.normalizeLines(member.toString());
+        int start = Collections.indexOfSubList(lines.subList(cursor, lines.size()), memberLines);
+        if (start == -1 || memberLines.isEmpty()) {
+          return null;
+        }
+        start += cursor;
+        cursor = start + memberLines.size();
+        keys.add(key(type, member));
+        bounds.add(start);
+        bounds.add(cursor);
+      }
+    }
+    bounds.add(lines.size());
+    int[] result = new int[bounds.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = bounds.get(i);
+    }
+    return new MemberChunks(keys, result);
+  }
+
+  /**
+   * Returns the key of a member, which identifies it independently of its annotations.
+   *
+   * @param type the top-level type that declares the member
+   * @param member a member of type
+   * @return the key of the member
+   */
+  private static String key(TypeDeclaration<?> type, BodyDeclaration<?> member) {
+    StringBuilder result = new StringBuilder();
+    result.append(type.getNameAsString()).append(' ').append(member.getClass().getSimpleName());
+    if (member instanceof NodeWithSimpleName) {
+      result.append(' ').append(((NodeWithSimpleName<?>) member).getNameAsString());
+    }
+    if (member instanceof CallableDeclaration) {
+      result.append('/').append(((CallableDeclaration<?>) member).getParameters().size());
+    } else if (member instanceof FieldDeclaration) {
+      for (VariableDeclarator variable : ((FieldDeclaration) member).getVariables()) {
+        result.append(' ').append(variable.getNameAsString());
+      }
+    } else if (member instanceof InitializerDeclaration) {
+      result.append(((InitializerDeclaration) member).isStatic() ? " static" : "");
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns true if this file and the given file have the same members in the same order, so that
+   * their segments can be diffed pairwise.
+   *
+   * @param other the split of another file
+   * @return true if the segments of the two files correspond to each other
+   */
+  boolean isAlignedWith(MemberChunks other) {
+    return keys.equals(other.keys);
+  }
+
+  /**
+   * Returns the number of segments.
+   *
+   * @return the number of segments, which is twice the number of members plus one
+   */
+  int size() {
+    return bounds.length - 1;
+  }
+
+  /**
+   * Returns the index of the first line of a segment.
+   *
+   * @param segment the index of a segment
+   * @return the index of the first line of the segment in the lines of the file
+   */
+  int start(int segment) {
+    return bounds[segment];
+  }
+
+  /**
+   * Returns the index just after the last line of a segment.
+   *
+   * @param segment the index of a segment
+   * @return the end (exclusive) of the segment in the lines of the file
+   */
+  int end(int segment) {
+    return bounds[segment + 1];
+  }
+}
@@ -0,0 +1,105 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Chunk;
+import com.github.difflib.patch.Patch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The diff of a large human-written file with its .ajava files, one segment at a time (see {@link
+ * MemberChunks}). Each pair of segments is diffed as a separate task. In the batch mode the tasks
+ * run on the pool of {@link BatchCounter}, so idle threads help with the largest file instead of
+ * waiting for it; otherwise they run on the common pool.
+ *
+ * <p>A MemberDiff keeps one {@link LineDiff} per segment of the human-written file, so whatever the
+ * diff engine computes for the human-written file is computed once for all the .ajava files. The
+ * .ajava files must be diffed one at a time.
+ */
+final class MemberDiff {
+
+  /** The normalized lines of the human-written file. */
+  private final List<String> original;
+
+  /** The segments of the human-written file. */
+  private final MemberChunks originalChunks;
+
+  /** The diff of each segment of the human-written file. */
+  private final List<LineDiff> segmentDiffs;
+
+  /**
+   * Creates a new MemberDiff.
+   *
+   * @param engine the algorithm that diffs each pair of segments
+   * @param original the normalized lines of the human-written file
+   * @param originalChunks the segments of original
+   */
+  MemberDiff(
+      InferredAnnosCounter.DiffEngine engine, List<String> original, MemberChunks originalChunks) {
+    this.original = original;
+    this.originalChunks = originalChunks;
+    this.segmentDiffs = new ArrayList<>(originalChunks.size());
+    for (int segment = 0; segment < originalChunks.size(); segment++) {
+      segmentDiffs.add(
+          engine.create(
+              original.subList(originalChunks.start(segment), originalChunks.end(segment))));
+    }
+  }
+
+  /**
+   * Computes the differences between the human-written file and an .ajava file with the same
+   * members.
+   *
+   * @param revised the normalized lines of the .ajava file
+   * @param revisedChunks the segments of revised, which must be aligned with the segments of the
+   *     human-written file
+   * @return the patch that turns the lines of the human-written file into revised
+   */
+  Patch<String> diff(List<String> revised, MemberChunks revisedChunks) {
+    List<ForkJoinTask<List<Change>>> tasks = new ArrayList<>(originalChunks.size());
+    for (int segment = 0; segment < originalChunks.size(); segment++) {
+      int index = segment;
+      tasks.add(ForkJoinTask.adapt(() -> diffSegment(index, revised, revisedChunks)));
+    }
+    ForkJoinTask.invokeAll(tasks);
+    List<Change> changes = new ArrayList<>();
+    for (ForkJoinTask<List<Change>> task : tasks) {
+      changes.addAll(task.join());
+    }
+    return Patch.generate(original, revised, changes);
+  }
+
+  /**
+   * Diffs one pair of segments.
+   *
+   * @param segment the index of the segment
+   * @param revised the normalized lines of the .ajava file
+   * @param revisedChunks the segments of revised
+   * @return the changes, with positions in the whole files
+   */
+  private List<Change> diffSegment(int segment, List<String> revised, MemberChunks revisedChunks) {
+    int sourceStart = originalChunks.start(segment);
+    int targetStart = revisedChunks.start(segment);
+    int targetEnd = revisedChunks.end(segment);
+    if (sourceStart == originalChunks.end(segment) && targetStart == targetEnd) {
+      return Collections.emptyList();
+    }
+    Patch<String> patch = segmentDiffs.get(segment).diff(revised.subList(targetStart, targetEnd));
+    List<Change> changes = new ArrayList<>();
+    for (AbstractDelta<String> delta : patch.getDeltas()) {
+      Chunk<String> source = delta.getSource();
+      Chunk<String> target = delta.getTarget();
+      changes.add(
+          new Change(
+              delta.getType(),
+              sourceStart + source.getPosition(),
+              sourceStart + source.getPosition() + source.getLines().size(),
+              targetStart + target.getPosition(),
+              targetStart + target.getPosition() + target.getLines().size()));
+    }
+    return changes;
+  }
+}
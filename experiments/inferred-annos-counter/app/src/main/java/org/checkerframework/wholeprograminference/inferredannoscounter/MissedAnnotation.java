@@ -0,0 +1,81 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+/**
+ * A tracked annotation of a human-written file that is not in any of the .ajava files, and is not
+ * in the scope of some SuppressWarnings: one of the annotations that WPI failed to infer. Instances
+ * are immutable.
+ */
+public final class MissedAnnotation {
+
+  /** The annotation, in the simple format and with the {@literal @} (e.g., "@Owning"). */
+  private final String annotation;
+
+  /** The line of the annotation in the human-written file, starting at 1, or 0 if unknown. */
+  private final int line;
+
+  /** The column of the annotation in the human-written file, starting at 1, or 0 if unknown. */
+  private final int column;
+
+  /**
+   * The declaration that the annotation is on, as described by {@link
+   * AnnotationSiteMatcher#site(com.github.javaparser.ast.expr.AnnotationExpr)}.
+   */
+  private final String declaration;
+
+  /**
+   * Creates a new MissedAnnotation.
+   *
+   * @param annotation the annotation, in the simple format
+   * @param line the line of the annotation in the human-written file, starting at 1, or 0
+   * @param column the column of the annotation in the human-written file, starting at 1, or 0
+   * @param declaration the declaration that the annotation is on
+   */
+  MissedAnnotation(String annotation, int line, int column, String declaration) {
+    this.annotation = annotation;
+    this.line = line;
+    this.column = column;
+    this.declaration = declaration;
+  }
+
+  /**
+   * Returns the annotation, in the simple format and with the {@literal @} (e.g., "@Owning").
+   *
+   * @return the annotation
+   */
+  public String getAnnotation() {
+    return annotation;
+  }
+
+  /**
+   * Returns the line of the annotation in the human-written file, as written, with its comments.
+   *
+   * @return the line of the annotation, starting at 1, or 0 if it is unknown
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * Returns the column of the {@literal @} of the annotation in its line of the human-written file.
+   *
+   * @return the column of the annotation, starting at 1, or 0 if it is unknown
+   */
+  public int getColumn() {
+    return column;
+  }
+
+  /**
+   * Returns the declaration that the annotation is on, from the outermost type to the innermost
+   * declaration, e.g. "type Foo > method close() : decl".
+   *
+   * @return the declaration that the annotation is on
+   */
+  public String getDeclaration() {
+    return declaration;
+  }
+
+  @Override
+  public String toString() {
+    return line + ":" + column + ": " + annotation + " on " + declaration;
+  }
+}
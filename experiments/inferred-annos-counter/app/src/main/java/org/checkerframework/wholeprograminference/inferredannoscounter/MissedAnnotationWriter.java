@@ -0,0 +1,74 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.checkerframework.checker.calledmethods.qual.EnsuresCalledMethods;
+import org.checkerframework.checker.mustcall.qual.Owning;
+
+/**
+ * Writes the report of the annotations that WPI failed to infer (see {@link MissedAnnotation}), for
+ * the manual analysis of the results. The report has one line per missed annotation, in the format
+ * of compiler messages, so that editors can jump to it:
+ *
+ * <pre>
+ * dir/Foo.java:12:5: @Owning on type Foo &gt; method Foo(Socket) &gt; param 0 : decl
+ * </pre>
+ *
+ * <p>The line and column are where the annotation is in the human-written file as written, with its
+ * comments (see {@link NormalizedFile#annotationRange}), and the declaration is the site of the
+ * annotation (see {@link AnnotationSiteMatcher#site}). The report is written as the files are
+ * counted, and flushed after each file, so a batch run does not keep the report of the whole
+ * project in memory. The only exception is a run with a manifest, which keeps the counts of every
+ * file, with their missed annotations, until it writes the manifest at the end of the run.
+ */
+final class MissedAnnotationWriter implements Closeable {
+
+  /** The file the report is written to. */
+  private final @Owning BufferedWriter out;
+
+  /**
+   * Creates a new MissedAnnotationWriter, which truncates the given file.
+   *
+   * @param file the file to write the report to
+   */
+  MissedAnnotationWriter(Path file) {
+    try {
+      this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write " + file, e);
+    }
+  }
+
+  /**
+   * Writes the missed annotations of one Java file.
+   *
+   * @param javaFile the Java file
+   * @param counts the counts for javaFile
+   */
+  void write(Path javaFile, AnnotationCounts counts) {
+    if (counts.getMissed().isEmpty()) {
+      return;
+    }
+    try {
+      for (MissedAnnotation missed : counts.getMissed()) {
+        out.write(javaFile + ":" + missed.getLine() + ":" + missed.getColumn() + ": ");
+        out.write(missed.getAnnotation() + " on " + missed.getDeclaration());
+        out.newLine();
+      }
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  @EnsuresCalledMethods(value = "this.out", methods = "close")
+  public void close() throws IOException {
+    out.close();
+  }
+}
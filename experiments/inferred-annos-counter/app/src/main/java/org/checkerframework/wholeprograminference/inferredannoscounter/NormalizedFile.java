@@ -0,0 +1,489 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Everything the diff-based matcher needs from one input file: its normalized lines (see {@link
+ * InferredAnnosCounter#normalizeLines(ParsedFile)}), which of those lines are tracked annotations,
+ * the keys of its tracked annotations (see {@link AnnotationSiteMatcher#trackedKeys}), and the
+ * range of each tracked annotation in the file as written. For a human-written file, it also holds
+ * the annotations to ignore and the site of each tracked annotation, so that the annotations that
+ * are not inferred can be reported.
+ *
+ * <p>The normalized lines come from the file printed without comments, with each annotation on a
+ * line of its own, so their indices are not lines of the file. The range of each annotation comes
+ * from its node in the AST (see {@link ParsedFile#getPrintedAnnotations()}), so it refers to the
+ * file as written, and a NormalizedFile read from the cache keeps it without parsing the file.
+ *
+ * <p>Unlike a {@link ParsedFile}, a NormalizedFile does not need the AST once it is created, so it
+ * can be stored by a {@link NormalizedFileCache} and read back by a later run without parsing the
+ * file again. The AST is only needed again to split a large file at its members (see {@link
+ * MemberChunks}); a NormalizedFile read from the cache parses the file again in that case.
+ */
+final class NormalizedFile {
+
+  /** The path of the file. */
+  private final Path path;
+
+  /** The normalized lines of the file. */
+  private final List<String> lines;
+
+  /** The indices in lines of the tracked annotations, in increasing order. */
+  private final int[] annotationLines;
+
+  /**
+   * The tracked annotation on each line of annotationLines, in the simple format and without
+   * arguments (e.g., "@Owning").
+   */
+  private final String[] annotationNames;
+
+  /**
+   * The range in the file as written of each tracked annotation, as four consecutive elements: the
+   * line and column of its first character and the line and column of its last character, starting
+   * at 1. The four elements are 0 if the range is unknown.
+   */
+  private final int[] annotationRanges;
+
+  /**
+   * For each tracked annotation of a human-written file, its site (see {@link
+   * AnnotationSiteMatcher#site}), or null if the annotation is in the scope of some
+   * SuppressWarnings. Empty for an .ajava file.
+   */
+  private final @Nullable String[] annotationSites;
+
+  /** The number of tracked annotations of the file with each key. */
+  private final Map<String, Integer> trackedKeys;
+
+  /**
+   * The number of annotations of each type that are within the scope of some SuppressWarnings, or
+   * null if this is an .ajava file.
+   */
+  private final @Nullable Map<String, Integer> ignored;
+
+  /** Whether the scopes of SuppressWarnings annotations were examined to compute ignored. */
+  private final boolean suppressionAnalyzed;
+
+  /** The parsed file, or null if this was read from the cache and the AST is not needed yet. */
+  private @Nullable ParsedFile parsed;
+
+  /**
+   * Creates a new NormalizedFile.
+   *
+   * @param path the path of the file
+   * @param lines the normalized lines of the file
+   * @param annotationLines the indices in lines of the tracked annotations
+   * @param annotationNames the tracked annotation on each line of annotationLines
+   * @param annotationRanges the range in the file as written of each tracked annotation
+   * @param annotationSites the site of each tracked annotation, or null for an ignored annotation,
+   *     or an empty array for an .ajava file
+   * @param trackedKeys the number of tracked annotations of the file with each key
+   * @param ignored the annotations to ignore, or null for an .ajava file
+   * @param suppressionAnalyzed whether the scopes of SuppressWarnings annotations were examined
+   * @param parsed the parsed file, or null if it is not in memory
+   */
+  private NormalizedFile(
+      Path path,
+      List<String> lines,
+      int[] annotationLines,
+      String[] annotationNames,
+      int[] annotationRanges,
+      @Nullable String[] annotationSites,
+      Map<String, Integer> trackedKeys,
+      @Nullable Map<String, Integer> ignored,
+      boolean suppressionAnalyzed,
+      @Nullable ParsedFile parsed) {
+    this.path = path;
+    this.lines = lines;
+    this.annotationLines = annotationLines;
+    this.annotationNames = annotationNames;
+    this.annotationRanges = annotationRanges;
+    this.annotationSites = annotationSites;
+    this.trackedKeys = trackedKeys;
+    this.ignored = ignored;
+    this.suppressionAnalyzed = suppressionAnalyzed;
+    this.parsed = parsed;
+  }
+
+  /**
+   * Normalizes a parsed file.
+   *
+   * @param file the parsed file
+   * @param registry the tracked annotations
+   * @param humanWritten true if file is a human-written file, whose annotations to ignore are
+   *     needed, and false if it is an .ajava file
+   * @return the normalized file
+   */
+  static NormalizedFile create(ParsedFile file, QualifierRegistry registry, boolean humanWritten) {
+    List<String> lines = new ArrayList<>();
+    List<Integer> annotationLines = new ArrayList<>();
+    List<String> annotationNames = new ArrayList<>();
+    List<@Nullable AnnotationExpr> annotationNodes = new ArrayList<>();
+    List<AnnotationLexer.Token> tokens = new ArrayList<>();
+    List<String> splitLines = AnnotationLexer.splitLines(file.getText(), tokens);
+    List<AnnotationExpr> printed = file.getPrintedAnnotations();
+    // the index in tokens of the first annotation on the current line or after it
+    int token = 0;
+    for (int index = 0; index < splitLines.size(); index++) {
+      String line = InferredAnnosCounter.extractCheckerPackage(splitLines.get(index));
+      // since it's too difficult to keep the length of whitespace at the beginning of each line the
+      // same
+      line = line.trim();
+      String name = InferredAnnosCounter.trimParen(line);
+      // If the line is a tracked annotation, then it contains exactly one annotation and nothing
+      // else.
+      boolean tracked = registry.isTracked(name);
+      line = InferredAnnosCounter.canonicalizeLine(line);
+      if (line.length() != 0) {
+        if (tracked) {
+          while (token < tokens.size() && tokens.get(token).line < index) {
+            token++;
+          }
+          annotationLines.add(lines.size());
+          annotationNames.add(name);
+          annotationNodes.add(printedNode(tokens, printed, token, index));
+        }
+        lines.add(line);
+      }
+    }
+    int[] lineArray = new int[annotationLines.size()];
+    for (int i = 0; i < lineArray.length; i++) {
+      lineArray[i] = annotationLines.get(i);
+    }
+    int[] ranges = new int[4 * lineArray.length];
+    for (int i = 0; i < lineArray.length; i++) {
+      AnnotationExpr node = annotationNodes.get(i);
+      Range range = node == null ? null : node.getRange().orElse(null);
+      if (range != null) {
+        ranges[4 * i] = range.begin.line;
+        ranges[4 * i + 1] = range.begin.column;
+        ranges[4 * i + 2] = range.end.line;
+        ranges[4 * i + 3] = range.end.column;
+      }
+    }
+    Map<String, Integer> ignored = null;
+    boolean suppressionAnalyzed = false;
+    String[] sites = new String[0];
+    if (humanWritten) {
+      // WPI does not remove annotations within the scope of a SuppressWarnings, so they are
+      // ignored. Finding the scopes is only needed if the file contains some SuppressWarnings.
+      suppressionAnalyzed = WarningSuppression.hasSuppressions(file.getAnnotations());
+      ignored = InferredAnnosCounter.returnListOfAnnosToIgnore(file, registry, suppressionAnalyzed);
+      sites = new String[lineArray.length];
+      for (int i = 0; i < lineArray.length; i++) {
+        AnnotationExpr node = annotationNodes.get(i);
+        if (node == null) {
+          sites[i] = "?";
+        } else if (!WarningSuppression.isKept(node, registry, suppressionAnalyzed)) {
+          sites[i] = AnnotationSiteMatcher.site(node);
+        }
+      }
+    }
+    return new NormalizedFile(
+        file.getPath(),
+        Collections.unmodifiableList(lines),
+        lineArray,
+        annotationNames.toArray(new String[0]),
+        ranges,
+        sites,
+        AnnotationSiteMatcher.trackedKeys(file, registry),
+        ignored,
+        suppressionAnalyzed,
+        file);
+  }
+
+  /**
+   * Returns the node of the annotation on a line of the printed text of a file. The printer and the
+   * lexer see the same annotations in the same order, so the i-th token of the lexer is the i-th
+   * printed node; the name of the node is checked in case they ever disagree.
+   *
+   * @param tokens the annotations found by the lexer in the text of the file
+   * @param printed the annotations printed in the text of the file
+   * @param token the index in tokens of the first annotation on the line or after it
+   * @param line the index of the line in the split of the text
+   * @return the node of the annotation on the line, or null if it is unknown
+   */
+  private static @Nullable AnnotationExpr printedNode(
+      List<AnnotationLexer.Token> tokens, List<AnnotationExpr> printed, int token, int line) {
+    if (tokens.size() != printed.size()
+        || token == tokens.size()
+        || tokens.get(token).line != line) {
+      return null;
+    }
+    AnnotationExpr node = printed.get(token);
+    return node.getNameAsString().equals(tokens.get(token).name) ? node : null;
+  }
+
+  /**
+   * Returns the normalized lines of the file.
+   *
+   * @return the normalized lines of the file
+   */
+  List<String> getLines() {
+    return lines;
+  }
+
+  /**
+   * Returns the number of tracked annotations in the lines of the file.
+   *
+   * @return the number of lines of the file that are a tracked annotation
+   */
+  int annotationCount() {
+    return annotationLines.length;
+  }
+
+  /**
+   * Returns the index of the line of a tracked annotation.
+   *
+   * @param i the index of a tracked annotation, less than {@link #annotationCount()}
+   * @return the index in {@link #getLines()} of the i-th tracked annotation
+   */
+  int annotationLine(int i) {
+    return annotationLines[i];
+  }
+
+  /**
+   * Returns the name of a tracked annotation.
+   *
+   * @param i the index of a tracked annotation, less than {@link #annotationCount()}
+   * @return the i-th tracked annotation, in the simple format and without arguments
+   */
+  String annotationName(int i) {
+    return annotationNames[i];
+  }
+
+  /**
+   * Returns the index of the tracked annotation on a line.
+   *
+   * @param line the index in {@link #getLines()} of a line
+   * @return the index of the tracked annotation on that line, or -1 if the line is not a tracked
+   *     annotation
+   */
+  int annotationIndexAt(int line) {
+    int index = Arrays.binarySearch(annotationLines, line);
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * Returns where a tracked annotation is in the file as written, with its comments.
+   *
+   * @param i the index of a tracked annotation, less than {@link #annotationCount()}
+   * @return the range of the i-th tracked annotation in the file, or null if it is unknown
+   */
+  @Nullable Range annotationRange(int i) {
+    if (annotationRanges[4 * i] == 0) {
+      return null;
+    }
+    return Range.range(
+        annotationRanges[4 * i],
+        annotationRanges[4 * i + 1],
+        annotationRanges[4 * i + 2],
+        annotationRanges[4 * i + 3]);
+  }
+
+  /**
+   * Returns the site of a tracked annotation of a human-written file.
+   *
+   * @param i the index of a tracked annotation, less than {@link #annotationCount()}
+   * @return the site of the i-th tracked annotation (see {@link AnnotationSiteMatcher#site}), or
+   *     null if it is in the scope of some SuppressWarnings
+   */
+  @Nullable String annotationSite(int i) {
+    return annotationSites[i];
+  }
+
+  /**
+   * Returns the keys of the tracked annotations of the file.
+   *
+   * @return the number of tracked annotations of the file with each key
+   */
+  Map<String, Integer> getTrackedKeys() {
+    return trackedKeys;
+  }
+
+  /**
+   * Returns the annotations to ignore.
+   *
+   * @return the number of annotations of each type that are within the scope of some
+   *     SuppressWarnings, or an empty map for an .ajava file
+   */
+  Map<String, Integer> getIgnored() {
+    return ignored == null ? Collections.emptyMap() : ignored;
+  }
+
+  /**
+   * Returns whether the scopes of SuppressWarnings annotations were examined.
+   *
+   * @return whether the scopes of SuppressWarnings annotations were examined to compute {@link
+   *     #getIgnored()}
+   */
+  boolean isSuppressionAnalyzed() {
+    return suppressionAnalyzed;
+  }
+
+  /**
+   * Returns the parsed file, parsing it again if this was read from the cache.
+   *
+   * @return the parsed file
+   */
+  ParsedFile getParsedFile() {
+    ParsedFile result = parsed;
+    if (result == null) {
+      result = ParsedFile.parse(path);
+      parsed = result;
+    }
+    return result;
+  }
+
+  /**
+   * Writes this file in the format read by {@link #read(Path, DataInputStream)}.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  void write(DataOutputStream out) throws IOException {
+    out.writeInt(lines.size());
+    for (String line : lines) {
+      writeString(out, line);
+    }
+    out.writeInt(annotationLines.length);
+    for (int i = 0; i < annotationLines.length; i++) {
+      out.writeInt(annotationLines[i]);
+      writeString(out, annotationNames[i]);
+      for (int j = 4 * i; j < 4 * i + 4; j++) {
+        out.writeInt(annotationRanges[j]);
+      }
+    }
+    out.writeInt(annotationSites.length);
+    for (int i = 0; i < annotationSites.length; i++) {
+      String site = annotationSites[i];
+      out.writeBoolean(site != null);
+      if (site != null) {
+        writeString(out, site);
+      }
+    }
+    writeMap(out, trackedKeys);
+    out.writeBoolean(ignored != null);
+    if (ignored != null) {
+      writeMap(out, ignored);
+    }
+    out.writeBoolean(suppressionAnalyzed);
+  }
+
+  /**
+   * Reads a file written by {@link #write(DataOutputStream)}.
+   *
+   * @param path the path of the file that was normalized
+   * @param in the stream to read from
+   * @return the normalized file
+   * @throws IOException if the stream cannot be read or is truncated
+   */
+  static NormalizedFile read(Path path, DataInputStream in) throws IOException {
+    int lineCount = in.readInt();
+    List<String> lines = new ArrayList<>(lineCount);
+    for (int i = 0; i < lineCount; i++) {
+      lines.add(readString(in));
+    }
+    int annotationCount = in.readInt();
+    int[] annotationLines = new int[annotationCount];
+    String[] annotationNames = new String[annotationCount];
+    int[] annotationRanges = new int[4 * annotationCount];
+    for (int i = 0; i < annotationCount; i++) {
+      annotationLines[i] = in.readInt();
+      annotationNames[i] = readString(in);
+      for (int j = 4 * i; j < 4 * i + 4; j++) {
+        annotationRanges[j] = in.readInt();
+      }
+    }
+    int siteCount = in.readInt();
+    String[] annotationSites = new String[siteCount];
+    for (int i = 0; i < siteCount; i++) {
+      annotationSites[i] = in.readBoolean() ? readString(in) : null;
+    }
+    Map<String, Integer> trackedKeys = readMap(in);
+    Map<String, Integer> ignored = in.readBoolean() ? readMap(in) : null;
+    boolean suppressionAnalyzed = in.readBoolean();
+    return new NormalizedFile(
+        path,
+        Collections.unmodifiableList(lines),
+        annotationLines,
+        annotationNames,
+        annotationRanges,
+        annotationSites,
+        trackedKeys,
+        ignored,
+        suppressionAnalyzed,
+        null);
+  }
+
+  /**
+   * Writes a string as its length followed by its UTF-8 bytes. Unlike {@link
+   * DataOutputStream#writeUTF(String)}, this works for strings of any length.
+   *
+   * @param out the stream to write to
+   * @param str the string to write
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+   *
+   * @param in the stream to read from
+   * @return the string
+   * @throws IOException if the stream cannot be read or is truncated
+   */
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes a map from strings to integers.
+   *
+   * @param out the stream to write to
+   * @param map the map to write
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeMap(DataOutputStream out, Map<String, Integer> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, Integer> e : map.entrySet()) {
+      writeString(out, e.getKey());
+      out.writeInt(e.getValue());
+    }
+  }
+
+  /**
+   * Reads a map written by {@link #writeMap(DataOutputStream, Map)}.
+   *
+   * @param in the stream to read from
+   * @return the map
+   * @throws IOException if the stream cannot be read or is truncated
+   */
+  private static Map<String, Integer> readMap(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Map<String, Integer> result = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      String key = readString(in);
+      result.put(key, in.readInt());
+    }
+    return result;
+  }
+}
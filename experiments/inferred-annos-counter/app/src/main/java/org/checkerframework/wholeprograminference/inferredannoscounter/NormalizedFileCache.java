@@ -0,0 +1,246 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of {@link NormalizedFile}s, so that a run of the counter does not parse and
+ * normalize again the files that an earlier run already normalized. The corpora are mostly the same
+ * from one run to the next, and parsing is by far the most expensive step of the counter.
+ *
+ * <p>The cache is content-addressed: an entry is keyed by the SHA-256 digest of the bytes of the
+ * file, the version of the normalization, the tracked qualifiers (see {@link
+ * QualifierRegistry#getDigest()}), and whether the file is human-written or an .ajava file. A file
+ * that is edited, moved, or normalized differently therefore never gets a stale entry, and an
+ * unchanged file hits its entry wherever it is. There is no invalidation: entries that are no
+ * longer used are evicted, least recently used first, when the total size of the entries exceeds
+ * the bound of the cache.
+ *
+ * <p>The cache is only an optimization: an entry that cannot be read or written is treated as
+ * missing. Several threads, and several processes, can use the same directory at once, since each
+ * entry is written to a temporary file and then moved into place.
+ */
+final class NormalizedFileCache {
+
+  /**
+   * The version of the normalization. It is part of every key, so it must be incremented whenever a
+   * change to the counter changes the content of a {@link NormalizedFile} for the same input, for
+   * example a change to {@link InferredAnnosCounter#normalizeLines(ParsedFile)}, to the keys of
+   * {@link AnnotationSiteMatcher}, or to the format of {@link NormalizedFile#write}.
+   */
+  static final int VERSION = 3;
+
+  /** The default bound on the total size of the entries, in megabytes. */
+  static final long DEFAULT_MAX_MEGABYTES = 512;
+
+  /** The file extension of the entries. */
+  private static final String ENTRY_EXTENSION = ".nf";
+
+  /** The directory of the entries. */
+  private final Path directory;
+
+  /** The bound on the total size of the entries, in bytes. */
+  private final long maxBytes;
+
+  /** The digest of the tracked qualifiers, which is part of every key. */
+  private final byte[] registryDigest;
+
+  /**
+   * The total size of the entries, in bytes. It is computed when the cache is opened and then kept
+   * up to date by this process only, so it is an estimate when several processes share the
+   * directory; each eviction computes it again.
+   */
+  private final AtomicLong size;
+
+  /**
+   * Opens a cache, creating its directory if needed.
+   *
+   * @param directory the directory of the entries
+   * @param maxBytes the bound on the total size of the entries, in bytes
+   * @param registry the tracked annotations
+   */
+  NormalizedFileCache(Path directory, long maxBytes, QualifierRegistry registry) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+    this.registryDigest = registry.getDigest();
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create the cache directory " + directory, e);
+    }
+    long total = 0;
+    for (Entry entry : listEntries()) {
+      total += entry.size;
+    }
+    this.size = new AtomicLong(total);
+  }
+
+  /**
+   * Returns the normalized form of a file, from the cache if it has an entry for the content of the
+   * file, and otherwise by parsing the file and adding an entry for it.
+   *
+   * @param file the path of the file
+   * @param content the bytes of the file
+   * @param registry the tracked annotations, which must be the registry of this cache
+   * @param humanWritten true if file is a human-written file and false if it is an .ajava file
+   * @return the normalized file
+   */
+  NormalizedFile get(Path file, byte[] content, QualifierRegistry registry, boolean humanWritten) {
+    Path entry = directory.resolve(key(content, humanWritten) + ENTRY_EXTENSION);
+    if (Files.isRegularFile(entry)) {
+      try (DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+        NormalizedFile result = NormalizedFile.read(file, in);
+        // The modification time of an entry is the time it was last used, for the eviction.
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        return result;
+      } catch (IOException e) {
+        // A truncated or concurrently evicted entry is a miss; the entry is written again below.
+      }
+    }
+    NormalizedFile result = NormalizedFile.create(ParsedFile.parse(file), registry, humanWritten);
+    put(entry, result);
+    return result;
+  }
+
+  /**
+   * Adds an entry to the cache, and evicts the least recently used entries if the cache is then
+   * larger than its bound.
+   *
+   * @param entry the path of the entry
+   * @param normalized the content of the entry
+   */
+  private void put(Path entry, NormalizedFile normalized) {
+    Path temporary = null;
+    try {
+      temporary = Files.createTempFile(directory, "entry", ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        normalized.write(out);
+      }
+      long entrySize = Files.size(temporary);
+      Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+      temporary = null;
+      if (size.addAndGet(entrySize) > maxBytes) {
+        evict();
+      }
+    } catch (IOException e) {
+      // The cache is only an optimization, so a run goes on without the entry.
+    } finally {
+      if (temporary != null) {
+        try {
+          Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+          // The temporary file is left behind; it is not an entry, so it is never read.
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache is at most three quarters of its bound,
+   * so that the next entries do not cause another eviction right away.
+   */
+  private synchronized void evict() {
+    List<Entry> entries = listEntries();
+    long total = 0;
+    for (Entry entry : entries) {
+      total += entry.size;
+    }
+    entries.sort((e1, e2) -> Long.compare(e1.lastUsed, e2.lastUsed));
+    long target = maxBytes / 4 * 3;
+    for (Entry entry : entries) {
+      if (total <= target) {
+        break;
+      }
+      try {
+        Files.deleteIfExists(entry.path);
+        total -= entry.size;
+      } catch (IOException e) {
+        // The entry is in use by another process; a later eviction deletes it.
+      }
+    }
+    size.set(total);
+  }
+
+  /** An entry of the cache on disk. */
+  private static class Entry {
+
+    /** The path of the entry. */
+    final Path path;
+
+    /** The size of the entry, in bytes. */
+    final long size;
+
+    /** The time the entry was last used, in milliseconds. */
+    final long lastUsed;
+
+    /**
+     * Creates a new Entry.
+     *
+     * @param path the path of the entry
+     * @param size the size of the entry, in bytes
+     * @param lastUsed the time the entry was last used, in milliseconds
+     */
+    Entry(Path path, long size, long lastUsed) {
+      this.path = path;
+      this.size = size;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  /**
+   * Returns the entries of the cache. Entries that are deleted while they are listed are skipped.
+   *
+   * @return the entries in the directory of the cache
+   */
+  private List<Entry> listEntries() {
+    List<Entry> result = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files
+          .filter(file -> file.getFileName().toString().endsWith(ENTRY_EXTENSION))
+          .forEach(
+              file -> {
+                try {
+                  result.add(
+                      new Entry(
+                          file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                } catch (IOException e) {
+                  // The entry was evicted by another thread or process.
+                }
+              });
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read the cache directory " + directory, e);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the key of the entry for the given content of a file.
+   *
+   * @param content the bytes of a file
+   * @param humanWritten true if the file is a human-written file and false if it is an .ajava file
+   * @return the key, as hexadecimal digits
+   */
+  String key(byte[] content, boolean humanWritten) {
+    MessageDigest digest = ContentHash.newDigest();
+    digest.update(
+        (VERSION + (humanWritten ? " java " : " ajava ")).getBytes(StandardCharsets.UTF_8));
+    digest.update(registryDigest);
+    digest.update(content);
+    return ContentHash.toHex(digest.digest());
+  }
+}
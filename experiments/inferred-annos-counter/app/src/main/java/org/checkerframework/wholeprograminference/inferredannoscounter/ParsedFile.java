@@ -0,0 +1,207 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.MarkerAnnotationExpr;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import com.github.javaparser.printer.DefaultPrettyPrinter;
+import com.github.javaparser.printer.DefaultPrettyPrinterVisitor;
+import com.github.javaparser.printer.configuration.DefaultPrinterConfiguration;
+import com.github.javaparser.printer.configuration.PrinterConfiguration;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An input file of the counter (either a human-written Java file or a .ajava file), parsed exactly
+ * once. Everything the counter needs from a file comes from the same parse: the text of the file
+ * without comments, which is the input of the line-based diff, and the annotations in the file,
+ * which are needed to decide which annotations are within the scope of some SuppressWarnings.
+ *
+ * <p>The text is printed, so its lines are not the lines of the file. To relate the two, the
+ * printer records each annotation node as it prints it (see {@link #getPrintedAnnotations()}): the
+ * i-th annotation in the text is the i-th printed node, whose range is where the annotation is in
+ * the file as written.
+ *
+ * <p>Parsing is by far the most expensive step of the counter on large files, so it should not be
+ * repeated.
+ */
+public final class ParsedFile {
+
+  /** The path of the file. */
+  private final Path path;
+
+  /** The parsed file, without comments. */
+  private final CompilationUnit compilationUnit;
+
+  /**
+   * The content of the file without comments, as printed by JavaParser. Printing is almost as
+   * expensive as parsing, so it is done the first time the text is needed, if ever.
+   */
+  private @Nullable String text;
+
+  /**
+   * The annotations in text, in the order they are printed, or null if text has not been printed
+   * yet. An annotation within the arguments of another annotation is not included.
+   */
+  private @Nullable List<AnnotationExpr> printedAnnotations;
+
+  /** Every annotation in the file, in order, or null if they have not been needed yet. */
+  private @Nullable List<AnnotationExpr> annotations;
+
+  /**
+   * Creates a new ParsedFile.
+   *
+   * @param path the path of the file
+   * @param compilationUnit the parsed file, without comments
+   */
+  private ParsedFile(Path path, CompilationUnit compilationUnit) {
+    this.path = path;
+    this.compilationUnit = compilationUnit;
+  }
+
+  /**
+   * Parses the given file. Comments are not attributed to any node of the result, so the text of
+   * the result does not contain them.
+   *
+   * @param path the path of the file to parse
+   * @return the parsed file
+   */
+  public static ParsedFile parse(Path path) {
+    CompilationUnit compilationUnit;
+    try {
+      StaticJavaParser.getParserConfiguration().setAttributeComments(false);
+      compilationUnit = StaticJavaParser.parse(path.toFile());
+    } catch (Exception e) {
+      throw new RuntimeException(
+          "Could not read file: " + path + ". Check that it exists?" + e.getMessage());
+    }
+    return new ParsedFile(path, compilationUnit);
+  }
+
+  /**
+   * Returns the path of the file.
+   *
+   * @return the path of the file
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the parsed file. It does not contain any comments.
+   *
+   * @return the parsed file
+   */
+  public CompilationUnit getCompilationUnit() {
+    return compilationUnit;
+  }
+
+  /**
+   * Returns the content of the file without comments, as printed by JavaParser.
+   *
+   * @return the content of the file without comments
+   */
+  public String getText() {
+    String result = text;
+    if (result == null) {
+      List<AnnotationExpr> printed = new ArrayList<>();
+      // the same printer as CompilationUnit.toString(), which also records the annotations
+      result =
+          new DefaultPrettyPrinter(
+                  configuration -> new RecordingVisitor(configuration, printed),
+                  new DefaultPrinterConfiguration())
+              .print(compilationUnit);
+      text = result;
+      printedAnnotations = Collections.unmodifiableList(printed);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the annotations in {@link #getText()}, in the order they are printed, which is the
+   * order the lexer finds them in (see {@link AnnotationLexer#lex(String)}). An annotation within
+   * the arguments of another annotation is part of the text of the outer one, so it is not
+   * included.
+   *
+   * @return an unmodifiable list of the annotations in the text of the file
+   */
+  List<AnnotationExpr> getPrintedAnnotations() {
+    getText();
+    List<AnnotationExpr> result = printedAnnotations;
+    if (result == null) {
+      throw new Error("The text of " + path + " was printed without its annotations");
+    }
+    return result;
+  }
+
+  /**
+   * Returns every annotation in the file, in the order they appear.
+   *
+   * @return an unmodifiable list of the annotations in the file
+   */
+  public List<AnnotationExpr> getAnnotations() {
+    List<AnnotationExpr> result = annotations;
+    if (result == null) {
+      result = Collections.unmodifiableList(compilationUnit.findAll(AnnotationExpr.class));
+      annotations = result;
+    }
+    return result;
+  }
+
+  /**
+   * The printer of JavaParser, which also records each annotation that is not within the arguments
+   * of another annotation, in the order it is printed.
+   */
+  private static final class RecordingVisitor extends DefaultPrettyPrinterVisitor {
+
+    /** The list to add the printed annotations to. */
+    private final List<AnnotationExpr> printed;
+
+    /** The number of annotations whose arguments are being printed. */
+    private int depth = 0;
+
+    /**
+     * Creates a new RecordingVisitor.
+     *
+     * @param configuration the configuration of the printer
+     * @param printed the list to add the printed annotations to
+     */
+    RecordingVisitor(PrinterConfiguration configuration, List<AnnotationExpr> printed) {
+      super(configuration);
+      this.printed = printed;
+    }
+
+    @Override
+    public void visit(MarkerAnnotationExpr n, Void arg) {
+      if (depth == 0) {
+        printed.add(n);
+      }
+      super.visit(n, arg);
+    }
+
+    @Override
+    public void visit(SingleMemberAnnotationExpr n, Void arg) {
+      if (depth == 0) {
+        printed.add(n);
+      }
+      depth++;
+      super.visit(n, arg);
+      depth--;
+    }
+
+    @Override
+    public void visit(NormalAnnotationExpr n, Void arg) {
+      if (depth == 0) {
+        printed.add(n);
+      }
+      depth++;
+      super.visit(n, arg);
+      depth--;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The totals of a batch run for a set of annotations: for each annotation, the sum over the Java
+ * files of the project of the number of annotations that were inferred, by any checker and by each
+ * checker, and of the number of annotations that are counted. These are the numbers of Table 1 of
+ * the paper, which table1.sh used to compute by summing the "@Owning got 1/2" lines of the output.
+ *
+ * <p>An instance is not thread-safe. A batch run gives each worker thread its own instance, which
+ * it updates without any synchronization, and merges them once all the files are counted.
+ */
+final class ProjectTotals {
+
+  /** The annotations that are totaled by default: the annotations of the resource leak checker. */
+  static final List<String> DEFAULT_ANNOTATIONS =
+      Collections.unmodifiableList(
+          Arrays.asList(
+              "@Owning",
+              "@MustCallAlias",
+              "@EnsuresCalledMethods",
+              "@InheritableMustCall",
+              "@NotOwning"));
+
+  /** The annotations that are totaled, in the simple format and in the order they are printed. */
+  private final List<String> annotations;
+
+  /** The number of inferred annotations of each annotation of {@link #annotations}. */
+  private final long[] matched;
+
+  /** The number of counted annotations of each annotation of {@link #annotations}. */
+  private final long[] total;
+
+  /**
+   * For each annotation of {@link #annotations}, the number of inferred annotations by each
+   * checker, sorted by the name of the checker.
+   */
+  private final List<Map<String, Long>> matchedBy;
+
+  /**
+   * Creates new ProjectTotals, all zero.
+   *
+   * @param annotations the annotations to total, in the simple format and with the {@literal @}
+   *     (e.g., "@Owning")
+   */
+  ProjectTotals(List<String> annotations) {
+    this.annotations = annotations;
+    this.matched = new long[annotations.size()];
+    this.total = new long[annotations.size()];
+    this.matchedBy = new ArrayList<>(annotations.size());
+    for (int i = 0; i < annotations.size(); i++) {
+      matchedBy.add(new TreeMap<>());
+    }
+  }
+
+  /**
+   * Parses the value of the command-line option that sets the annotations to total.
+   *
+   * @param value a comma-separated list of annotations, with or without the {@literal @}
+   * @return the annotations, in the simple format and with the {@literal @}
+   */
+  static List<String> parseAnnotations(String value) {
+    String[] names = value.split(",");
+    for (int i = 0; i < names.length; i++) {
+      String name = names[i].trim();
+      names[i] = name.startsWith("@") ? name : "@" + name;
+    }
+    return Collections.unmodifiableList(Arrays.asList(names));
+  }
+
+  /**
+   * Adds the counts of one Java file to the totals.
+   *
+   * @param counts the counts for a Java file
+   */
+  void add(AnnotationCounts counts) {
+    for (int i = 0; i < annotations.size(); i++) {
+      AnnotationCounts.Count count = counts.get(annotations.get(i));
+      if (count != null) {
+        matched[i] += count.getMatched();
+        total[i] += count.getTotal();
+        for (Map.Entry<String, Integer> e : count.getMatchedBy().entrySet()) {
+          matchedBy.get(i).merge(e.getKey(), (long) e.getValue(), Long::sum);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds other totals, for the same annotations, to these totals.
+   *
+   * @param other the totals of other Java files
+   */
+  void merge(ProjectTotals other) {
+    for (int i = 0; i < annotations.size(); i++) {
+      matched[i] += other.matched[i];
+      total[i] += other.total[i];
+      for (Map.Entry<String, Long> e : other.matchedBy.get(i).entrySet()) {
+        matchedBy.get(i).merge(e.getKey(), e.getValue(), Long::sum);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of inferred annotations of the given annotation.
+   *
+   * @param annotation one of the totaled annotations
+   * @return the sum of the inferred annotations over the Java files that were added
+   */
+  long getMatched(String annotation) {
+    return matched[annotations.indexOf(annotation)];
+  }
+
+  /**
+   * Returns the number of inferred annotations of the given annotation by the given checker.
+   *
+   * @param annotation one of the totaled annotations
+   * @param checker the name of a checker
+   * @return the sum of the annotations inferred by checker over the Java files that were added
+   */
+  long getMatchedBy(String annotation, String checker) {
+    return matchedBy.get(annotations.indexOf(annotation)).getOrDefault(checker, 0L);
+  }
+
+  /**
+   * Returns the number of counted annotations of the given annotation.
+   *
+   * @param annotation one of the totaled annotations
+   * @return the sum of the counted annotations over the Java files that were added
+   */
+  long getTotal(String annotation) {
+    return total[annotations.indexOf(annotation)];
+  }
+
+  /**
+   * Prints the totals, one line "Total @Owning: 12/34" per annotation, including the annotations
+   * that are not in any Java file, followed by one line "Total @Owning by (checker): 10/34" per
+   * checker that has an .ajava file for a Java file that contains the annotation.
+   *
+   * @param out the stream to print to
+   */
+  void print(PrintStream out) {
+    for (int i = 0; i < annotations.size(); i++) {
+      out.println("Total " + annotations.get(i) + ": " + matched[i] + "/" + total[i]);
+      for (Map.Entry<String, Long> e : matchedBy.get(i).entrySet()) {
+        out.println(
+            "Total "
+                + annotations.get(i)
+                + " by "
+                + e.getKey()
+                + ": "
+                + e.getValue()
+                + "/"
+                + total[i]);
+      }
+    }
+  }
+}
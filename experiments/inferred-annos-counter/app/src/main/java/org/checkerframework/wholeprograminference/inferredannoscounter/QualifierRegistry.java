@@ -0,0 +1,271 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The type qualifiers that the counter tracks, as listed in type-qualifiers.txt. The file is read
+ * once per process (see {@link #getDefault()}), and the same registry is shared by every file of a
+ * batch run and by every thread. Instances are immutable.
+ *
+ * <p>Each tracked qualifier has a compact integer id, between 0 and {@link #size()} (exclusive), so
+ * that per-qualifier data can be kept in arrays. Looking up a qualifier is a single hash lookup
+ * instead of a scan of the list of qualifiers.
+ */
+public final class QualifierRegistry {
+
+  /** The name of the file that lists the tracked qualifiers, in the working directory. */
+  static final String TYPE_QUALIFIERS_FILE = "type-qualifiers.txt";
+
+  /** Holds the registry returned by {@link #getDefault()}, which is read lazily. */
+  private static class DefaultHolder {
+
+    /** The registry read from type-qualifiers.txt in the working directory. */
+    static final QualifierRegistry DEFAULT = read(Paths.get(TYPE_QUALIFIERS_FILE));
+  }
+
+  /**
+   * The tracked qualifiers in the simple format with a leading {@literal @} (e.g., "@Pure"),
+   * indexed by id. The strings are interned.
+   */
+  private final List<String> names;
+
+  /** The id of each tracked qualifier, keyed by its name in the simple format. */
+  private final Map<String, Integer> ids;
+
+  /** A map from the simple name of each qualifier (e.g., "Pure") to its fully-qualified names. */
+  private final Map<String, List<String>> fullyQualifiedNames;
+
+  /**
+   * The last dot-separated part of the name of each tracked qualifier, which is the part that every
+   * way of writing the qualifier in a file contains.
+   */
+  private final Set<String> lastNameParts;
+
+  /**
+   * The SHA-256 digest of the lines of type-qualifiers.txt, which identifies the set of tracked
+   * qualifiers in the keys of a {@link NormalizedFileCache}.
+   */
+  private final byte[] digest;
+
+  /**
+   * Creates a new QualifierRegistry.
+   *
+   * @param typeQualifiers the fully-qualified names of the tracked qualifiers, as written in
+   *     type-qualifiers.txt
+   */
+  QualifierRegistry(List<String> typeQualifiers) {
+    List<String> names = new ArrayList<>();
+    Map<String, Integer> ids = new HashMap<>();
+    Map<String, List<String>> fullyQualifiedNames = new HashMap<>();
+    for (String str : typeQualifiers) {
+      // The qualifiers are compared with lines that went through extractCheckerPackage, so they are
+      // stored in the same format. extractCheckerPackage keeps the '@', but the names in the file
+      // do not have one, so it is added here.
+      String name = extractName(str);
+      if (!ids.containsKey(name)) {
+        ids.put(name, names.size());
+        names.add(name);
+      }
+      String fullyQualifiedName = str.trim().intern();
+      String simpleName = fullyQualifiedName.substring(fullyQualifiedName.lastIndexOf('.') + 1);
+      fullyQualifiedNames
+          .computeIfAbsent(simpleName.intern(), k -> new ArrayList<>())
+          .add(fullyQualifiedName);
+    }
+    for (Map.Entry<String, List<String>> e : fullyQualifiedNames.entrySet()) {
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    }
+    this.names = Collections.unmodifiableList(names);
+    this.ids = ids;
+    this.fullyQualifiedNames = fullyQualifiedNames;
+    this.lastNameParts = new HashSet<>();
+    for (String name : names) {
+      lastNameParts.add(name.substring(Math.max(name.lastIndexOf('.'), 0) + 1));
+    }
+    this.digest =
+        ContentHash.newDigest()
+            .digest(String.join("\n", typeQualifiers).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the name under which a line of type-qualifiers.txt is tracked.
+   *
+   * @param str a line of type-qualifiers.txt
+   * @return the qualifier in the simple format with a leading {@literal @}, interned
+   */
+  private static String extractName(String str) {
+    String name = InferredAnnosCounter.extractCheckerPackage('@' + str);
+    StringBuilder result = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!InferredAnnosCounter.isRegexWhitespace(c)) {
+        result.append(c);
+      }
+    }
+    return result.toString().intern();
+  }
+
+  /**
+   * Returns the registry read from type-qualifiers.txt in the working directory. The file is read
+   * the first time this method is called.
+   *
+   * @return the default registry
+   */
+  public static QualifierRegistry getDefault() {
+    return DefaultHolder.DEFAULT;
+  }
+
+  /**
+   * Reads a registry from a file that lists one fully-qualified qualifier name per line.
+   *
+   * @param file the file to read, usually type-qualifiers.txt
+   * @return the registry of the qualifiers in file
+   */
+  static QualifierRegistry read(Path file) {
+    try {
+      return new QualifierRegistry(Files.readAllLines(file, StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read " + file + ", check if it exists?");
+    }
+  }
+
+  /**
+   * Returns the number of tracked qualifiers. Their ids are between 0 and this number (exclusive).
+   *
+   * @return the number of tracked qualifiers
+   */
+  public int size() {
+    return names.size();
+  }
+
+  /**
+   * Returns the id of a tracked qualifier.
+   *
+   * @param annotation an annotation in the simple format with a leading {@literal @} and without
+   *     arguments (e.g., "@Pure")
+   * @return the id of the qualifier, or -1 if it is not tracked
+   */
+  public int getId(String annotation) {
+    Integer id = ids.get(annotation);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns true if the given annotation is tracked.
+   *
+   * @param annotation an annotation in the simple format with a leading {@literal @} and without
+   *     arguments (e.g., "@Pure")
+   * @return true if the annotation is in type-qualifiers.txt
+   */
+  public boolean isTracked(String annotation) {
+    return ids.containsKey(annotation);
+  }
+
+  /**
+   * Returns the name of the qualifier with the given id.
+   *
+   * @param id the id of a tracked qualifier
+   * @return the qualifier in the simple format with a leading {@literal @} (e.g., "@Pure")
+   */
+  public String getName(int id) {
+    return names.get(id);
+  }
+
+  /**
+   * Returns a digest of the tracked qualifiers. Two registries read from files with the same lines
+   * have the same digest.
+   *
+   * @return the SHA-256 digest of the lines of type-qualifiers.txt
+   */
+  public byte[] getDigest() {
+    return digest.clone();
+  }
+
+  /**
+   * Returns the fully-qualified names of the qualifiers with the given simple name. If there is no
+   * such qualifier, returns a list containing only the given name.
+   *
+   * @param simpleName the simple name of a qualifier, without {@literal @} (e.g., "Pure")
+   * @return the fully-qualified names (e.g., "org.checkerframework.dataflow.qual.Pure")
+   */
+  public List<String> getFullyQualifiedNames(String simpleName) {
+    List<String> result = fullyQualifiedNames.get(simpleName);
+    return result == null ? Collections.singletonList(simpleName) : result;
+  }
+
+  /**
+   * Returns true if the given content of a Java file might contain a tracked qualifier: that is, if
+   * it contains an {@literal @} followed by a name (simple or fully-qualified) whose last part is
+   * the simple name of a tracked qualifier. This is a cheap scan of the bytes of the file, which
+   * does not parse it. It may return true for a file whose only such text is in a comment or a
+   * string, but it does not return false for a file that contains a tracked qualifier, unless the
+   * name of the qualifier is split by whitespace or comments around its dots.
+   *
+   * @param content the bytes of a Java file
+   * @return false if the file certainly does not contain any tracked qualifier
+   */
+  public boolean mayContainTrackedQualifier(byte[] content) {
+    int length = content.length;
+    for (int i = 0; i < length; i++) {
+      if (content[i] != '@') {
+        continue;
+      }
+      int partStart = i + 1;
+      // Java permits whitespace between the '@' and the name of an annotation.
+      while (partStart < length && isWhitespaceByte(content[partStart])) {
+        partStart++;
+      }
+      int end = partStart;
+      while (end < length && (isNameByte(content[end]) || content[end] == '.')) {
+        if (content[end] == '.') {
+          partStart = end + 1;
+        }
+        end++;
+      }
+      if (end > partStart
+          && lastNameParts.contains(
+              new String(content, partStart, end - partStart, StandardCharsets.ISO_8859_1))) {
+        return true;
+      }
+      i = end - 1;
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given byte is a whitespace character in Java source code.
+   *
+   * @param b a byte of a file
+   * @return true if b is a space, a tab, a form feed, or a line terminator
+   */
+  private static boolean isWhitespaceByte(byte b) {
+    return b == ' ' || b == '\t' || b == '\f' || b == '\n' || b == '\r';
+  }
+
+  /**
+   * Returns true if the given byte can be part of a Java identifier. Non-ASCII bytes are accepted,
+   * because they might be part of a non-ASCII identifier.
+   *
+   * @param b a byte of a file
+   * @return true if b is a letter, a digit, '_', '$', or not ASCII
+   */
+  private static boolean isNameByte(byte b) {
+    return (b >= 'a' && b <= 'z')
+        || (b >= 'A' && b <= 'Z')
+        || (b >= '0' && b <= '9')
+        || b == '_'
+        || b == '$'
+        || b < 0;
+  }
+}
@@ -0,0 +1,296 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The manifest of a batch run (see {@link BatchCounter}): for each Java file, the hashes of the
+ * Java file and of its .ajava files, and the counts for the file. The next run with the same
+ * manifest only counts again the Java files whose content, or whose set of .ajava files or their
+ * content, changed, and takes the counts of the other files from the manifest. After WPI runs
+ * again, usually only a few .ajava files change, so the next run takes seconds.
+ *
+ * <p>The manifest is a text file. Its first line identifies the settings of the run (see {@link
+ * #settings}); a manifest written with other settings is not used. Then, for each Java file, there
+ * is a line "java (hash) (path)", a line "ajava (hash) (path)" per .ajava file, a line
+ * "suppression-analyzed" if the scopes of SuppressWarnings annotations were examined, and a line
+ * "count (annotation) (found) (ignored) (matched) (checker)=(matched by checker)..." per type of
+ * annotation, in the order they are reported, and a line "missed (line):(column) (annotation)
+ * (declaration)" per annotation that was not inferred. The paths are relative to the root of the
+ * human-written files and to the root of the generated files, so that the trees can be moved.
+ */
+final class RunManifest {
+
+  /**
+   * The version of the results of the counter. It is part of the settings, so it must be
+   * incremented whenever a change to the counter changes its results for the same files.
+   */
+  static final int VERSION = 4;
+
+  /** The first word of the first line of a manifest. */
+  private static final String HEADER = "inferred-annos-counter-manifest";
+
+  /** The inputs and the result of the counter for one Java file. */
+  static final class Entry {
+
+    /**
+     * The hash of the Java file, followed by the relative path and the hash of each .ajava file.
+     */
+    final List<String> inputs;
+
+    /** The counts for the Java file. */
+    final AnnotationCounts counts;
+
+    /**
+     * Creates a new Entry.
+     *
+     * @param inputs the hashes of the input files; see {@link #inputs(Path, List, Path)}
+     * @param counts the counts for the Java file
+     */
+    Entry(List<String> inputs, AnnotationCounts counts) {
+      this.inputs = inputs;
+      this.counts = counts;
+    }
+  }
+
+  /** The entries, keyed by the path of the Java file relative to the human-written root. */
+  private final Map<String, Entry> entries;
+
+  /**
+   * Creates a new RunManifest.
+   *
+   * @param entries the entries, keyed by relative path
+   */
+  private RunManifest(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Returns the settings of a run, which must be the same for a manifest to be used.
+   *
+   * @param matcher the matcher of the run
+   * @param engine the diff engine of the run
+   * @param registry the tracked annotations of the run
+   * @return the settings, as a line without newline
+   */
+  static String settings(
+      InferredAnnosCounter.Matcher matcher,
+      InferredAnnosCounter.DiffEngine engine,
+      QualifierRegistry registry) {
+    return HEADER
+        + " version="
+        + VERSION
+        + " matcher="
+        + matcher.name().toLowerCase()
+        + " diff="
+        + engine.name().toLowerCase()
+        + " qualifiers="
+        + ContentHash.toHex(registry.getDigest());
+  }
+
+  /**
+   * Returns the hashes of the inputs of the counter for one Java file.
+   *
+   * @param javaFile the Java file
+   * @param ajavaFiles the .ajava files of javaFile
+   * @param generatedRoot the root of the .ajava files
+   * @return the hash of javaFile, followed by the relative path and the hash of each .ajava file
+   */
+  static List<String> inputs(Path javaFile, List<Path> ajavaFiles, Path generatedRoot) {
+    List<String> result = new ArrayList<>(1 + 2 * ajavaFiles.size());
+    result.add(hash(javaFile));
+    for (Path ajavaFile : ajavaFiles) {
+      result.add(generatedRoot.relativize(ajavaFile).toString());
+      result.add(hash(ajavaFile));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the hash of the content of a file.
+   *
+   * @param file a file
+   * @return the SHA-256 digest of the content of file
+   */
+  private static String hash(Path file) {
+    try {
+      return ContentHash.of(Files.readAllBytes(file));
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read file: " + file + ". Check that it exists?");
+    }
+  }
+
+  /**
+   * Reads a manifest. A missing manifest, or a manifest written with other settings, is empty.
+   *
+   * @param file the manifest file
+   * @param settings the settings of this run; see {@link #settings}
+   * @return the manifest
+   */
+  static RunManifest read(Path file, String settings) {
+    Map<String, Entry> entries = new HashMap<>();
+    if (!Files.isRegularFile(file)) {
+      return new RunManifest(entries);
+    }
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read the manifest " + file, e);
+    }
+    if (lines.isEmpty() || !lines.get(0).equals(settings)) {
+      return new RunManifest(entries);
+    }
+    String path = null;
+    List<String> inputs = new ArrayList<>();
+    List<AnnotationCounts.Count> counts = new ArrayList<>();
+    boolean suppressionAnalyzed = false;
+    List<MissedAnnotation> missed = new ArrayList<>();
+    for (String line : lines.subList(1, lines.size())) {
+      String[] words = line.split(" ", 3);
+      switch (words[0]) {
+        case "java":
+          if (path != null) {
+            entries.put(
+                path,
+                new Entry(inputs, new AnnotationCounts(counts, suppressionAnalyzed, missed)));
+          }
+          path = words[2];
+          inputs = new ArrayList<>();
+          inputs.add(words[1]);
+          counts = new ArrayList<>();
+          suppressionAnalyzed = false;
+          missed = new ArrayList<>();
+          break;
+        case "ajava":
+          inputs.add(words[2]);
+          inputs.add(words[1]);
+          break;
+        case "suppression-analyzed":
+          suppressionAnalyzed = true;
+          break;
+        case "count":
+          String[] fields = line.split(" ");
+          Map<String, Integer> matchedBy = new LinkedHashMap<>();
+          for (int i = 5; i < fields.length; i++) {
+            int equals = fields[i].lastIndexOf('=');
+            matchedBy.put(
+                fields[i].substring(0, equals), Integer.parseInt(fields[i].substring(equals + 1)));
+          }
+          counts.add(
+              new AnnotationCounts.Count(
+                  fields[1],
+                  Integer.parseInt(fields[2]),
+                  Integer.parseInt(fields[3]),
+                  Integer.parseInt(fields[4]),
+                  matchedBy));
+          break;
+        case "missed":
+          String[] missedFields = line.split(" ", 4);
+          String[] position = missedFields[1].split(":", 2);
+          missed.add(
+              new MissedAnnotation(
+                  missedFields[2],
+                  Integer.parseInt(position[0]),
+                  Integer.parseInt(position[1]),
+                  missedFields[3]));
+          break;
+        default:
+          throw new RuntimeException("Malformed line in the manifest " + file + ": " + line);
+      }
+    }
+    if (path != null) {
+      entries.put(
+          path, new Entry(inputs, new AnnotationCounts(counts, suppressionAnalyzed, missed)));
+    }
+    return new RunManifest(entries);
+  }
+
+  /**
+   * Returns the counts recorded for a Java file, if its inputs did not change.
+   *
+   * @param relativePath the path of the Java file relative to the human-written root
+   * @param inputs the hashes of the inputs of the Java file; see {@link #inputs(Path, List, Path)}
+   * @return the counts in the manifest, or null if the manifest has no entry for the file or if its
+   *     inputs changed
+   */
+  @Nullable AnnotationCounts lookup(String relativePath, List<String> inputs) {
+    Entry entry = entries.get(relativePath);
+    return entry != null && entry.inputs.equals(inputs) ? entry.counts : null;
+  }
+
+  /**
+   * Writes a manifest. It is written to a temporary file that is then moved into place, so that an
+   * interrupted run leaves the previous manifest intact.
+   *
+   * @param file the manifest file
+   * @param settings the settings of this run; see {@link #settings}
+   * @param entries the entries, keyed by the path of the Java file relative to the human-written
+   *     root, in the order they are written
+   */
+  static void write(Path file, String settings, Map<String, Entry> entries) {
+    Path directory = file.toAbsolutePath().getParent();
+    try {
+      Path temporary = Files.createTempFile(directory, "manifest", ".tmp");
+      try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+        out.write(settings);
+        out.newLine();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+          List<String> inputs = e.getValue().inputs;
+          out.write("java " + inputs.get(0) + " " + e.getKey());
+          out.newLine();
+          for (int i = 1; i < inputs.size(); i += 2) {
+            out.write("ajava " + inputs.get(i + 1) + " " + inputs.get(i));
+            out.newLine();
+          }
+          AnnotationCounts counts = e.getValue().counts;
+          if (counts.isSuppressionAnalyzed()) {
+            out.write("suppression-analyzed");
+            out.newLine();
+          }
+          for (AnnotationCounts.Count count : counts.getCounts()) {
+            out.write(
+                "count "
+                    + count.getAnnotation()
+                    + " "
+                    + count.getFound()
+                    + " "
+                    + count.getIgnored()
+                    + " "
+                    + count.getMatched());
+            for (Map.Entry<String, Integer> matchedBy : count.getMatchedBy().entrySet()) {
+              out.write(" " + matchedBy.getKey() + "=" + matchedBy.getValue());
+            }
+            out.newLine();
+          }
+          for (MissedAnnotation missed : counts.getMissed()) {
+            out.write(
+                "missed "
+                    + missed.getLine()
+                    + ":"
+                    + missed.getColumn()
+                    + " "
+                    + missed.getAnnotation()
+                    + " "
+                    + missed.getDeclaration());
+            out.newLine();
+          }
+        }
+      }
+      Files.move(
+          temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write the manifest " + file, e);
+    }
+  }
+}
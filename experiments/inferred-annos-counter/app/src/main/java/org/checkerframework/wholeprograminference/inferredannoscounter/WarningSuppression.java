@@ -0,0 +1,273 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MemberValuePair;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import com.github.javaparser.ast.expr.StringLiteralExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithAnnotations;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Decides which annotations of a parsed file WPI would never have removed, and therefore cannot be
+ * expected to infer. These are the annotations that RemoveAnnotationsForInference (from the Checker
+ * Framework) keeps: JDK annotations, annotations that are trusted rather than checked, and
+ * annotations within the scope of a SuppressWarnings for their checker.
+ *
+ * <p>The rules are the same as in RemoveAnnotationsForInference, but they are applied directly to a
+ * CompilationUnit that is already in memory, instead of rewriting a copy of the file on disk and
+ * parsing the result again.
+ */
+final class WarningSuppression {
+
+  /** Do not instantiate. */
+  private WarningSuppression() {
+    throw new Error("Do not instantiate WarningSuppression");
+  }
+
+  /** The annotations from the JDK, which RemoveAnnotationsForInference never removes. */
+  private static final Set<String> JDK_ANNOTATIONS =
+      new HashSet<>(
+          Arrays.asList(
+              "Serial",
+              "java.io.Serial",
+              "Deprecated",
+              "java.lang.Deprecated",
+              "FunctionalInterface",
+              "java.lang.FunctionalInterface",
+              "Override",
+              "java.lang.Override",
+              "SafeVarargs",
+              "java.lang.SafeVarargs",
+              "Documented",
+              "java.lang.annotation.Documented",
+              "Inherited",
+              "java.lang.annotation.Inherited",
+              "Native",
+              "java.lang.annotation.Native",
+              "Repeatable",
+              "java.lang.annotation.Repeatable",
+              "Retention",
+              "java.lang.annotation.Retention",
+              "SuppressWarnings",
+              "java.lang.SuppressWarnings",
+              "Target",
+              "java.lang.annotation.Target"));
+
+  /**
+   * The annotations that are trusted rather than checked, which RemoveAnnotationsForInference never
+   * removes.
+   */
+  private static final Set<String> TRUSTED_ANNOTATIONS =
+      new HashSet<>(
+          Arrays.asList(
+              "Untainted",
+              "org.checkerframework.checker.tainting.qual.Untainted",
+              "InternedDistinct",
+              "org.checkerframework.checker.interning.qual.InternedDistinct",
+              "ReturnsReceiver",
+              "org.checkerframework.checker.builder.qual.ReturnsReceiver",
+              "TerminatesExecution",
+              "org.checkerframework.dataflow.qual.TerminatesExecution",
+              "Covariant",
+              "org.checkerframework.framework.qual.Covariant",
+              "NonLeaked",
+              "org.checkerframework.common.aliasing.qual.NonLeaked",
+              "LeakedToResult",
+              "org.checkerframework.common.aliasing.qual.LeakedToResult"));
+
+  /**
+   * The annotations that suppress all inference within their scope, like @SuppressWarnings("all").
+   */
+  private static final Set<String> SUPPRESS_ALL_ANNOTATIONS =
+      new HashSet<>(
+          Arrays.asList(
+              "IgnoreInWholeProgramInference",
+              "org.checkerframework.framework.qual.IgnoreInWholeProgramInference",
+              "Inject",
+              "javax.inject.Inject",
+              "Singleton",
+              "javax.inject.Singleton",
+              "Option",
+              "org.checkerframework.org.plumelib.options.Option"));
+
+  /**
+   * Returns true if any of the given annotations suppresses warnings or inference: that is, if it
+   * is a SuppressWarnings annotation or an annotation that suppresses all inference. Only the names
+   * of the annotations are checked, not their arguments.
+   *
+   * <p>Most files do not contain any such annotation, and then no annotation of the file can be
+   * within the scope of one, so {@link #isKept(AnnotationExpr, QualifierRegistry, boolean)} does
+   * not need to look at the enclosing declarations of each annotation.
+   *
+   * @param annotations all the annotations of a parsed file
+   * @return true if some annotation might suppress warnings
+   */
+  static boolean hasSuppressions(List<AnnotationExpr> annotations) {
+    for (AnnotationExpr anno : annotations) {
+      String name = anno.getNameAsString();
+      if (name.equals("SuppressWarnings")
+          || name.equals("java.lang.SuppressWarnings")
+          || SUPPRESS_ALL_ANNOTATIONS.contains(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if WPI would never remove the given annotation, so that it should not be counted.
+   *
+   * @param anno an annotation in a parsed file
+   * @param registry the tracked annotations, which give the fully-qualified names of anno
+   * @param checkScopes whether the file contains any annotation that suppresses warnings, as
+   *     returned by {@link #hasSuppressions(List)}. If false, the enclosing declarations of anno
+   *     are not examined.
+   * @return true if the annotation is a JDK annotation, a trusted annotation, or within the scope
+   *     of a SuppressWarnings for its checker
+   */
+  static boolean isKept(AnnotationExpr anno, QualifierRegistry registry, boolean checkScopes) {
+    String name = anno.getNameAsString();
+    return JDK_ANNOTATIONS.contains(name)
+        || TRUSTED_ANNOTATIONS.contains(name)
+        || (checkScopes && isSuppressed(anno, registry));
+  }
+
+  /**
+   * Returns true if the given annotation is within the scope of a SuppressWarnings (or similar)
+   * annotation that applies to its checker.
+   *
+   * @param anno an annotation in a parsed file
+   * @param registry the tracked annotations, which give the fully-qualified names of anno
+   * @return true if the annotation is within the scope of a warning suppression
+   */
+  private static boolean isSuppressed(AnnotationExpr anno, QualifierRegistry registry) {
+    Collection<String> names = registry.getFullyQualifiedNames(anno.getNameAsString());
+    Optional<Node> parent = anno.getParentNode();
+    while (parent.isPresent()) {
+      Node node = parent.get();
+      if (node instanceof NodeWithAnnotations) {
+        for (AnnotationExpr enclosing : ((NodeWithAnnotations<?>) node).getAnnotations()) {
+          if (suppresses(enclosing, names)) {
+            return true;
+          }
+        }
+      }
+      parent = node.getParentNode();
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given annotation suppresses warnings from the checker of an annotation with
+   * one of the given names. A SuppressWarnings string suppresses the annotation if, after removing
+   * everything up to the first colon, it equals "allcheckers" or one of the dot-separated parts of
+   * one of the names (e.g., "mustcall" for org.checkerframework.checker.mustcall.qual.Owning).
+   *
+   * @param anno an annotation that might suppress warnings
+   * @param names the fully-qualified names of the annotation that might be suppressed
+   * @return true if anno suppresses the annotation
+   */
+  private static boolean suppresses(AnnotationExpr anno, Collection<String> names) {
+    List<String> suppressWarningsStrings = suppressWarningsStrings(anno);
+    if (suppressWarningsStrings == null) {
+      return false;
+    }
+    List<String> checkerNames = new ArrayList<>(suppressWarningsStrings.size());
+    for (String suppressWarningsString : suppressWarningsStrings) {
+      checkerNames.add(checkerName(suppressWarningsString));
+    }
+    if (checkerNames.contains("allcheckers")) {
+      return true;
+    }
+    for (String name : names) {
+      for (String part : name.split("\\.")) {
+        if (checkerNames.contains(part)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the strings in the given annotation if it is a SuppressWarnings annotation, a list
+   * containing only "allcheckers" if it is an annotation that suppresses all inference, and null
+   * otherwise. Also returns null if the strings cannot be determined because they are constants.
+   *
+   * @param anno an annotation
+   * @return the strings that anno suppresses, or null
+   */
+  private static @Nullable List<String> suppressWarningsStrings(AnnotationExpr anno) {
+    String name = anno.getNameAsString();
+    if (name.equals("SuppressWarnings") || name.equals("java.lang.SuppressWarnings")) {
+      if (anno instanceof NormalAnnotationExpr) {
+        for (MemberValuePair pair : ((NormalAnnotationExpr) anno).getPairs()) {
+          if (pair.getNameAsString().equals("value")) {
+            return annotationElementStrings(pair.getValue());
+          }
+        }
+        return Collections.emptyList();
+      } else if (anno instanceof SingleMemberAnnotationExpr) {
+        return annotationElementStrings(((SingleMemberAnnotationExpr) anno).getMemberValue());
+      } else {
+        return Collections.emptyList();
+      }
+    }
+    if (SUPPRESS_ALL_ANNOTATIONS.contains(name)) {
+      return Collections.singletonList("allcheckers");
+    }
+    return null;
+  }
+
+  /**
+   * Returns the string literals in the value of a SuppressWarnings annotation, or null if the value
+   * contains anything other than string literals.
+   *
+   * @param value the value of a SuppressWarnings annotation
+   * @return the strings in value, or null
+   */
+  private static @Nullable List<String> annotationElementStrings(Expression value) {
+    if (value instanceof StringLiteralExpr) {
+      return Collections.singletonList(((StringLiteralExpr) value).asString());
+    } else if (value instanceof ArrayInitializerExpr) {
+      List<String> result = new ArrayList<>();
+      for (Expression element : ((ArrayInitializerExpr) value).getValues()) {
+        if (!(element instanceof StringLiteralExpr)) {
+          return null;
+        }
+        result.add(((StringLiteralExpr) element).asString());
+      }
+      return result;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the part of a SuppressWarnings string after the first colon, or the whole string if it
+   * does not contain a colon. This is what RemoveAnnotationsForInference compares with the names of
+   * the checkers.
+   *
+   * @param suppressWarningsString a string from a SuppressWarnings annotation
+   * @return the part after the first colon
+   */
+  private static String checkerName(String suppressWarningsString) {
+    int colonPos = suppressWarningsString.indexOf(':');
+    if (colonPos == -1) {
+      return suppressWarningsString;
+    }
+    return suppressWarningsString.substring(colonPos + 1);
+  }
+}
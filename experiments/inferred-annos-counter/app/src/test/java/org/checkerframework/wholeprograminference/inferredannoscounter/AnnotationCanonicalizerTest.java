@@ -0,0 +1,44 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+public class AnnotationCanonicalizerTest {
+
+  @Test
+  public void singleElementArraysAndValueAreCanonical() {
+    String expected = "@EnsuresNonNull(\"tz1\")";
+    assertEquals(expected, AnnotationCanonicalizer.canonicalize("@EnsuresNonNull(\"tz1\")"));
+    assertEquals(expected, AnnotationCanonicalizer.canonicalize("@EnsuresNonNull({\"tz1\"})"));
+    assertEquals(
+        expected, AnnotationCanonicalizer.canonicalize("@EnsuresNonNull(value = { \"tz1\" })"));
+    assertEquals(
+        "@EnsuresCalledMethods(value=\"this.selector\",methods=\"close\")",
+        AnnotationCanonicalizer.canonicalize(
+            "@EnsuresCalledMethods(value = { \"this.selector\" }, methods = { \"close\" })"));
+    assertEquals("@Pure", AnnotationCanonicalizer.canonicalize("@Pure()"));
+  }
+
+  @Test
+  public void keepsTheStructureOfArrays() {
+    assertNotEquals(
+        AnnotationCanonicalizer.canonicalize("@IntVal({3, 4})"),
+        AnnotationCanonicalizer.canonicalize("@IntVal({{3}, {4}})"));
+    assertNotEquals(
+        AnnotationCanonicalizer.canonicalize("@MinLen({\"a\", \"b\"})"),
+        AnnotationCanonicalizer.canonicalize("@MinLen({\"b\", \"a\"})"));
+    assertEquals(
+        AnnotationCanonicalizer.canonicalize("@MinLen({\"a\",\"b\"})"),
+        AnnotationCanonicalizer.canonicalize("@MinLen({ \"a\", \"b\" })"));
+  }
+
+  @Test
+  public void simplifiesFullyQualifiedNames() {
+    assertEquals(
+        "@EnsuresNonNull(\"tz1\")",
+        AnnotationCanonicalizer.canonicalize(
+            "@org.checkerframework.checker.nullness.qual.EnsuresNonNull({\"tz1\"})"));
+  }
+}
@@ -0,0 +1,69 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class AnnotationLexerTest {
+
+  /**
+   * Returns the text of each annotation that the lexer finds in the input.
+   *
+   * @param text the input of the lexer
+   * @return the annotations in text
+   */
+  private static List<String> annotations(String text) {
+    List<String> result = new ArrayList<>();
+    for (AnnotationLexer.Token token : AnnotationLexer.lex(text)) {
+      result.add(token.text());
+    }
+    return result;
+  }
+
+  @Test
+  public void ignoresLiteralsAndComments() {
+    assertEquals(
+        Arrays.asList("@NonNull"),
+        annotations(
+            "String s = \"@Nullable \\\" @Pure\"; char c = '@'; // @Owning\n"
+                + "/* @MustCall */ @NonNull String t;"));
+  }
+
+  @Test
+  public void matchesNestedParentheses() {
+    assertEquals(
+        Arrays.asList("@EnsuresNonNull(value = {\"a(\", \"b)\"})", "@Pure"),
+        annotations("@EnsuresNonNull(value = {\"a(\", \"b)\"}) @Pure int f();"));
+  }
+
+  @Test
+  public void skipsAnnotationTypeDeclarations() {
+    assertEquals(
+        Arrays.asList("@Retention(RUNTIME)"), annotations("@Retention(RUNTIME) @interface A {}"));
+  }
+
+  @Test
+  public void putsEachAnnotationOnItsOwnLine() {
+    assertEquals(
+        Arrays.asList(
+            "  void f(", "@Owning", " Socket s, ", "@MustCall(\"close\")", " Closeable c);"),
+        AnnotationLexer.splitLines(
+            "  void f(@Owning Socket s, @MustCall(\n    \"close\") Closeable c);"));
+  }
+
+  @Test
+  public void recordsTheLineOfEachAnnotation() {
+    List<AnnotationLexer.Token> tokens = new ArrayList<>();
+    List<String> lines =
+        AnnotationLexer.splitLines(
+            "@Pure\nint f(@Owning Socket s, @MustCall(\n\"close\") C c);", tokens);
+    assertEquals(3, tokens.size());
+    for (AnnotationLexer.Token token : tokens) {
+      assertEquals("@" + token.name, InferredAnnosCounter.trimParen(lines.get(token.line)));
+    }
+    assertEquals(-1, AnnotationLexer.lex("@Pure").get(0).line);
+  }
+}
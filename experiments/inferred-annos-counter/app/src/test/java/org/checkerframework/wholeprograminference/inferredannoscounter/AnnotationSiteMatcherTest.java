@@ -0,0 +1,155 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class AnnotationSiteMatcherTest {
+
+  /**
+   * Runs both matchers on a pair of test cases and checks that they agree.
+   *
+   * @param name the name of the test case, without extension
+   */
+  private void assertMatchersAgree(String name) {
+    Path original = Paths.get("testCases/" + name + ".java");
+    List<Path> ajavas = Collections.singletonList(Paths.get("testCases/" + name + ".ajava"));
+    AnnotationCounts diff =
+        InferredAnnosCounter.count(original, ajavas, InferredAnnosCounter.Matcher.DIFF);
+    AnnotationCounts ast =
+        InferredAnnosCounter.count(original, ajavas, InferredAnnosCounter.Matcher.AST);
+    assertEquals(name, sorted(diff), sorted(ast));
+  }
+
+  /**
+   * Returns the counts as sorted strings, since the matchers may report them in different orders.
+   *
+   * @param counts the result of a matcher
+   * @return the sorted counts
+   */
+  private static List<String> sorted(AnnotationCounts counts) {
+    List<String> result = new ArrayList<>();
+    for (AnnotationCounts.Count count : counts.getCounts()) {
+      result.add(count + " ignored " + count.getIgnored());
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  @Test
+  public void agreesWithTheDiffMatcher() {
+    assertMatchersAgree("MatchThreeAnnotations");
+    assertMatchersAgree("AnnotationWithArgument");
+    assertMatchersAgree("AnnotationWithinWarningSuppression");
+    assertMatchersAgree("GJFMultiLine");
+    assertMatchersAgree("MultiLineAnnotation");
+    assertMatchersAgree("AnnotationMismatch");
+  }
+
+  @Test
+  public void doesNotDependOnTheFormattingOfTypeAnnotations() {
+    AnnotationCounts counts =
+        InferredAnnosCounter.count(
+            Paths.get("testCases/TypeAnnotationOnDeclaredType.java"),
+            Collections.singletonList(Paths.get("testCases/TypeAnnotationOnDeclaredType.ajava")),
+            InferredAnnosCounter.Matcher.AST);
+    assertEquals("@Nullable got 2/2", String.valueOf(counts.get("@Nullable")));
+    assertEquals("@NonNull got 1/1", String.valueOf(counts.get("@NonNull")));
+  }
+
+  @Test
+  public void matchesEveryAjavaFileInOnePass() {
+    List<Path> ajavas =
+        Arrays.asList(
+            Paths.get("testCases/MatchThreeAnnotationsPure.ajava"),
+            Paths.get("testCases/MatchThreeAnnotationsNonNull.ajava"));
+    for (InferredAnnosCounter.Matcher matcher : InferredAnnosCounter.Matcher.values()) {
+      AnnotationCounts counts =
+          InferredAnnosCounter.count(
+              Paths.get("testCases/MatchThreeAnnotations.java"), ajavas, matcher);
+      assertEquals("@Pure got 1/1", String.valueOf(counts.get("@Pure")));
+      assertEquals("@NonNull got 1/1", String.valueOf(counts.get("@NonNull")));
+      assertEquals("@SideEffectFree got 0/1", String.valueOf(counts.get("@SideEffectFree")));
+    }
+  }
+
+  @Test
+  public void findsAjavaFilesThatContainEveryAnnotation() {
+    QualifierRegistry registry = QualifierRegistry.getDefault();
+    for (String name : Arrays.asList("MatchThreeAnnotations", "AnnotationMismatch")) {
+      Map<String, Integer> original =
+          AnnotationSiteMatcher.trackedKeys(
+              ParsedFile.parse(Paths.get("testCases/" + name + ".java")), registry);
+      Map<String, Integer> ajava =
+          AnnotationSiteMatcher.trackedKeys(
+              ParsedFile.parse(Paths.get("testCases/" + name + ".ajava")), registry);
+      assertTrue(AnnotationSiteMatcher.containsAll(original, original));
+      assertEquals(
+          name,
+          name.equals("MatchThreeAnnotations"),
+          AnnotationSiteMatcher.containsAll(ajava, original));
+    }
+  }
+
+  @Test
+  public void countsAFileThatIsItsOwnAjavaFileAsFullyInferred() {
+    Path original = Paths.get("testCases/AnnotationMismatch.java");
+    AnnotationCounts counts =
+        InferredAnnosCounter.count(
+            original, Collections.singletonList(original), InferredAnnosCounter.Matcher.DIFF);
+    assertEquals("@Nullable got 1/1", String.valueOf(counts.get("@Nullable")));
+    assertEquals("@NonNull got 1/1", String.valueOf(counts.get("@NonNull")));
+  }
+
+  @Test
+  public void attributesTheAnnotationsToTheCheckerOfEachAjavaFile() {
+    Path original = Paths.get("testCases/AnnotationMismatch.java");
+    Path ajava = Paths.get("testCases/AnnotationMismatch.ajava");
+    for (InferredAnnosCounter.Matcher matcher : InferredAnnosCounter.Matcher.values()) {
+      // the original file is its own .ajava file, and infers every annotation; the other .ajava
+      // file is still examined for the attribution
+      AnnotationCounts both =
+          InferredAnnosCounter.count(original, Arrays.asList(original, ajava), matcher);
+      AnnotationCounts alone =
+          InferredAnnosCounter.count(original, Collections.singletonList(ajava), matcher);
+      for (AnnotationCounts.Count count : both.getCounts()) {
+        String name = matcher + " " + count.getAnnotation();
+        assertEquals(name, count.getFound(), count.getMatched());
+        assertEquals(
+            name,
+            Integer.valueOf(count.getFound()),
+            count.getMatchedBy().get("AnnotationMismatch.java"));
+        assertEquals(
+            name,
+            Integer.valueOf(alone.get(count.getAnnotation()).getMatched()),
+            count.getMatchedBy().get("AnnotationMismatch"));
+      }
+    }
+  }
+
+  @Test
+  public void namesTheCheckerOfAnAjavaFile() {
+    assertEquals(
+        "org.checkerframework.checker.resourceleak.ResourceLeakChecker",
+        InferredAnnosCounter.checkerName(
+            Paths.get(
+                "dir/Foo-org.checkerframework.checker.resourceleak.ResourceLeakChecker.ajava")));
+    assertEquals("Foo", InferredAnnosCounter.checkerName(Paths.get("dir/Foo.ajava")));
+  }
+
+  @Test
+  public void selectedWithAFlag() {
+    assertEquals(
+        InferredAnnosCounter.Matcher.AST, InferredAnnosCounter.parseMatcher("--matcher=ast"));
+    assertEquals(
+        InferredAnnosCounter.Matcher.DIFF, InferredAnnosCounter.parseMatcher("--matcher=diff"));
+  }
+}
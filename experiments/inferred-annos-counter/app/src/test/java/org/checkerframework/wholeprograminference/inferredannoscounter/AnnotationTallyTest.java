@@ -0,0 +1,138 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class AnnotationTallyTest {
+
+  private final QualifierRegistry registry =
+      new QualifierRegistry(
+          Arrays.asList(
+              "org.checkerframework.dataflow.qual.Pure",
+              "org.checkerframework.checker.mustcall.qual.Owning"));
+
+  private final int pure = registry.getId("@Pure");
+  private final int owning = registry.getId("@Owning");
+
+  /**
+   * Returns the counts as strings, in the order they are reported.
+   *
+   * @param counts some counts
+   * @return the counts as strings
+   */
+  private static List<String> strings(AnnotationCounts counts) {
+    List<String> result = new ArrayList<>();
+    for (AnnotationCounts.Count count : counts.getCounts()) {
+      result.add(count.toString());
+    }
+    return result;
+  }
+
+  @Test
+  public void anAnnotationIsInferredIfSomeAjavaFileHasIt() {
+    // two .ajava files; the first @Owning is missed by both, the second by one
+    AnnotationTally tally = new AnnotationTally(registry, 2, Arrays.asList("A", "B"));
+    tally.addAnnotationAt(1, owning);
+    tally.addAnnotationAt(3, pure);
+    tally.addAnnotationAt(40, owning);
+    assertTrue(tally.isAnnotationAt(40));
+    assertFalse(tally.isAnnotationAt(2));
+    assertFalse(tally.isAnnotationAt(41));
+    tally.addMissAt(1, 0);
+    tally.addMissAt(1, 1);
+    tally.addMissAt(40, 1);
+    tally.resolveMisses();
+    assertEquals(
+        Arrays.asList("@Owning got 1/2", "@Pure got 1/1"),
+        strings(tally.toCounts(Collections.emptyMap(), false)));
+  }
+
+  @Test
+  public void anAjavaFileWithoutMissesInfersEverything() {
+    AnnotationTally tally = new AnnotationTally(registry, 2, Arrays.asList("A", "B"));
+    tally.addAnnotationAt(0, owning);
+    tally.addAnnotationAt(1, pure);
+    tally.addMissAt(0, 0);
+    tally.addMissAt(1, 0);
+    tally.resolveMisses();
+    AnnotationCounts counts = tally.toCounts(Collections.emptyMap(), false);
+    assertEquals(Arrays.asList("@Owning got 1/1", "@Pure got 1/1"), strings(counts));
+  }
+
+  @Test
+  public void aMissRecordedTwiceIsOneMiss() {
+    AnnotationTally tally = new AnnotationTally(registry, 1, Arrays.asList("A", "B"));
+    tally.addAnnotationAt(0, owning);
+    tally.addMissAt(0, 0);
+    tally.addMissAt(0, 0);
+    tally.resolveMisses();
+    assertEquals(1, tally.toCounts(Collections.emptyMap(), false).get("@Owning").getMatched());
+  }
+
+  @Test
+  public void attributesTheAnnotationsToEachChecker() {
+    // three .ajava files, two of them from the same checker
+    AnnotationTally tally = new AnnotationTally(registry, 3, Arrays.asList("A", "B", "A"));
+    tally.addAnnotationAt(0, owning);
+    tally.addAnnotationAt(1, owning);
+    tally.addAnnotationAt(2, owning);
+    // inferred by B only
+    tally.addMissAt(0, 0);
+    tally.addMissAt(0, 2);
+    // inferred by the second file of A only
+    tally.addMissAt(1, 0);
+    tally.addMissAt(1, 1);
+    // inferred by nobody
+    tally.addMissAt(2, 0);
+    tally.addMissAt(2, 1);
+    tally.addMissAt(2, 2);
+    tally.resolveMisses();
+    AnnotationCounts.Count count = tally.toCounts(Collections.emptyMap(), false).get("@Owning");
+    assertEquals(2, count.getMatched());
+    Map<String, Integer> expected = new LinkedHashMap<>();
+    expected.put("A", 1);
+    expected.put("B", 1);
+    assertEquals(expected, count.getMatchedBy());
+  }
+
+  @Test
+  public void handlesMoreThan64AjavaFiles() {
+    List<String> checkers = new ArrayList<>();
+    for (int i = 0; i < 70; i++) {
+      checkers.add("C" + i);
+    }
+    AnnotationTally tally = new AnnotationTally(registry, 1, checkers);
+    tally.addAnnotationAt(0, pure);
+    for (int i = 0; i < 70; i++) {
+      if (i != 66) {
+        tally.addMissAt(0, i);
+      }
+    }
+    tally.resolveMisses();
+    AnnotationCounts.Count count = tally.toCounts(Collections.emptyMap(), false).get("@Pure");
+    assertEquals(1, count.getMatched());
+    assertEquals(Integer.valueOf(1), count.getMatchedBy().get("C66"));
+    assertEquals(Integer.valueOf(0), count.getMatchedBy().get("C2"));
+  }
+
+  @Test
+  public void countsTheIgnoredAnnotations() {
+    AnnotationTally tally = new AnnotationTally(registry, 0, Collections.singletonList("A"));
+    tally.addAnnotationAt(0, pure);
+    tally.addAnnotationAt(1, pure);
+    tally.addMissAt(1, 0);
+    tally.resolveMisses();
+    AnnotationCounts counts = tally.toCounts(Collections.singletonMap("@Pure", 1), false);
+    assertEquals("@Pure got 1/1", String.valueOf(counts.get("@Pure")));
+    assertEquals(1, counts.get("@Pure").getIgnored());
+  }
+}
@@ -0,0 +1,148 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchCounterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final PrintStream standardOut = System.out;
+  private final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
+  private final PrintStream standardErr = System.err;
+  private final ByteArrayOutputStream errorStreamCaptor = new ByteArrayOutputStream();
+
+  private final Path humanWritten = Paths.get("testCases/batch/human-written");
+  private final Path generated = Paths.get("testCases/batch/generated");
+
+  @Before
+  public void setUp() {
+    System.setOut(new PrintStream(outputStreamCaptor));
+    System.setErr(new PrintStream(errorStreamCaptor));
+  }
+
+  @After
+  public void tearDown() {
+    System.setOut(standardOut);
+    System.setErr(standardErr);
+  }
+
+  @Test
+  public void pairsFilesByRelativePath() {
+    Map<Path, List<Path>> pairs = BatchCounter.pairFiles(humanWritten, generated);
+    assertEquals(2, pairs.size());
+    assertEquals(
+        Collections.singletonList(
+            generated.resolve(
+                "paired/MatchThreeAnnotations-org.checkerframework.checker.nullness.NullnessChecker.ajava")),
+        pairs.get(humanWritten.resolve("paired/MatchThreeAnnotations.java")));
+    assertEquals(
+        Collections.emptyList(),
+        pairs.get(humanWritten.resolve("unpaired/MatchThreeAnnotations.java")));
+  }
+
+  @Test
+  public void countsEveryFileInOneRun() {
+    BatchCounter.main(new String[] {humanWritten.toString(), generated.toString()});
+    String output = outputStreamCaptor.toString();
+    int pairedIndex =
+        output.indexOf(humanWritten.resolve("paired/MatchThreeAnnotations.java") + ":");
+    int unpairedIndex =
+        output.indexOf(humanWritten.resolve("unpaired/MatchThreeAnnotations.java") + ":");
+    assertTrue("Missing output for the paired file: " + output, pairedIndex != -1);
+    assertTrue("Files are not in sorted order: " + output, pairedIndex < unpairedIndex);
+    String pairedOutput = output.substring(pairedIndex, unpairedIndex);
+    String unpairedOutput = output.substring(unpairedIndex);
+    assertTrue(pairedOutput, pairedOutput.contains("@Pure got 1/1"));
+    assertTrue(pairedOutput, pairedOutput.contains("@NonNull got 1/1"));
+    assertTrue(pairedOutput, pairedOutput.contains("@SideEffectFree got 1/1"));
+    assertTrue(unpairedOutput, unpairedOutput.contains("@Pure got 0/1"));
+    assertTrue(unpairedOutput, unpairedOutput.contains("@NonNull got 0/1"));
+    assertTrue(unpairedOutput, unpairedOutput.contains("@SideEffectFree got 0/1"));
+  }
+
+  /**
+   * Checks that the batch counter prints the same output with one thread and with four threads.
+   *
+   * @param humanWrittenRoot the root directory of the human-written Java files
+   * @param generatedRoot the root directory of the generated .ajava files
+   */
+  private void assertSameOutputWithOneAndFourThreads(Path humanWrittenRoot, Path generatedRoot) {
+    outputStreamCaptor.reset();
+    BatchCounter.main(
+        new String[] {"--threads=1", humanWrittenRoot.toString(), generatedRoot.toString()});
+    String sequentialOutput = outputStreamCaptor.toString();
+    outputStreamCaptor.reset();
+    BatchCounter.main(
+        new String[] {"--threads=4", humanWrittenRoot.toString(), generatedRoot.toString()});
+    assertEquals(sequentialOutput, outputStreamCaptor.toString());
+  }
+
+  @Test
+  public void outputDoesNotDependOnTheNumberOfThreads() throws IOException {
+    assertSameOutputWithOneAndFourThreads(humanWritten, generated);
+    // HRegion.java is large enough to be diffed one member at a time.
+    Path regionServer = Paths.get("org/apache/hadoop/hbase/regionserver");
+    Path hbase = Paths.get("../inputExamples/hbase");
+    Path hbaseHumanWritten = hbase.resolve("human-written/server").resolve(regionServer);
+    Path hbaseGenerated = hbase.resolve("generated/server").resolve(regionServer);
+    assertTrue(
+        MemberChunks.shouldSplit(
+            InferredAnnosCounter.normalizeLines(
+                    ParsedFile.parse(hbaseHumanWritten.resolve("HRegion.java")))
+                .size()));
+    Path root = folder.newFolder("human-written").toPath();
+    Path ajavaRoot = folder.newFolder("generated").toPath();
+    Files.copy(hbaseHumanWritten.resolve("HRegion.java"), root.resolve("HRegion.java"));
+    for (String checker :
+        Arrays.asList(
+            "org.checkerframework.checker.mustcall.MustCallChecker",
+            "org.checkerframework.checker.resourceleak.ResourceLeakChecker")) {
+      String ajava = "HRegion-" + checker + ".ajava";
+      Files.copy(hbaseGenerated.resolve(ajava), ajavaRoot.resolve(ajava));
+    }
+    assertSameOutputWithOneAndFourThreads(root, ajavaRoot);
+  }
+
+  @Test
+  public void theFastPathExcludesFailedAndReusedFiles() throws IOException {
+    Path root = folder.newFolder("human-written").toPath();
+    Path ajavaRoot = folder.newFolder("generated").toPath();
+    Files.copy(Paths.get("testCases/MatchThreeAnnotations.java"), root.resolve("Good.java"));
+    Files.write(
+        root.resolve("Broken.java"), "class { @Pure void f()".getBytes(StandardCharsets.UTF_8));
+    String manifest = "--manifest=" + folder.getRoot().toPath().resolve("manifest.txt");
+    BatchCounter.main(new String[] {manifest, root.toString(), ajavaRoot.toString()});
+    String summary = errorStreamCaptor.toString();
+    assertTrue(
+        summary,
+        summary.contains(
+            "Counted 1 files; 1 of them took the fast path without SuppressWarnings analysis."));
+    assertTrue(summary, summary.contains("Could not process 1 files."));
+    errorStreamCaptor.reset();
+    BatchCounter.main(new String[] {manifest, root.toString(), ajavaRoot.toString()});
+    summary = errorStreamCaptor.toString();
+    assertTrue(
+        summary,
+        summary.contains(
+            "Counted 0 files; 0 of them took the fast path without SuppressWarnings analysis."));
+    assertTrue(summary, summary.contains("Reused the counts of 1 unchanged files"));
+  }
+}
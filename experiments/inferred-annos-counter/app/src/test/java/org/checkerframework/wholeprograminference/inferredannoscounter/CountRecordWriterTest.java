@@ -0,0 +1,97 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CountRecordWriterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final QualifierRegistry registry =
+      new QualifierRegistry(
+          Arrays.asList(
+              "org.checkerframework.checker.mustcall.qual.Owning",
+              "org.checkerframework.checker.nullness.qual.NonNull",
+              "org.checkerframework.checker.nonempty.qual.NonNull"));
+
+  private final AnnotationCounts counts = createCounts();
+
+  /**
+   * Returns the counts that are written: two types of annotation, one of them attributed to two
+   * checkers.
+   *
+   * @return the counts of a Java file
+   */
+  private static AnnotationCounts createCounts() {
+    Map<String, Integer> matchedBy = new LinkedHashMap<>();
+    matchedBy.put("MustCallChecker", 1);
+    matchedBy.put("ResourceLeakChecker", 0);
+    return new AnnotationCounts(
+        Arrays.asList(
+            new AnnotationCounts.Count("@Owning", 3, 1, 1, matchedBy),
+            new AnnotationCounts.Count("@NonNull", 2, 0, 2)),
+        false);
+  }
+
+  /**
+   * Writes the counts of a file in the given format, and returns the lines that were written.
+   *
+   * @param javaFile the path of the Java file in the records
+   * @param format the format of the records
+   * @return the lines of the records file
+   */
+  private List<String> write(Path javaFile, CountRecordWriter.Format format) throws IOException {
+    Path file = folder.getRoot().toPath().resolve("records");
+    try (CountRecordWriter writer = new CountRecordWriter(file, format, registry)) {
+      writer.write(javaFile, counts);
+      writer.write(Paths.get("Empty.java"), new AnnotationCounts(Collections.emptyList(), false));
+    }
+    return Files.readAllLines(file, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void writesOneJsonObjectPerAnnotationType() throws IOException {
+    assertEquals(
+        Arrays.asList(
+            "{\"file\":\"dir/A.java\",\"annotation\":\"@Owning\","
+                + "\"fqn\":[\"org.checkerframework.checker.mustcall.qual.Owning\"],"
+                + "\"matched\":1,\"total\":2,\"ignored\":1,"
+                + "\"matched_by\":{\"MustCallChecker\":1,\"ResourceLeakChecker\":0}}",
+            "{\"file\":\"dir/A.java\",\"annotation\":\"@NonNull\","
+                + "\"fqn\":[\"org.checkerframework.checker.nullness.qual.NonNull\","
+                + "\"org.checkerframework.checker.nonempty.qual.NonNull\"],"
+                + "\"matched\":2,\"total\":2,\"ignored\":0,\"matched_by\":{}}"),
+        write(Paths.get("dir/A.java"), CountRecordWriter.Format.JSONL));
+  }
+
+  @Test
+  public void escapesJsonStrings() throws IOException {
+    String line = write(Paths.get("dir/\"A\\.java"), CountRecordWriter.Format.JSONL).get(0);
+    assertEquals("{\"file\":\"dir/\\\"A\\\\.java\",", line.substring(0, line.indexOf(',') + 1));
+  }
+
+  @Test
+  public void writesCsvWithAHeader() throws IOException {
+    assertEquals(
+        Arrays.asList(
+            "file,annotation,fqn,matched,total,ignored,matched_by",
+            "\"dir/A,B.java\",@Owning,org.checkerframework.checker.mustcall.qual.Owning,1,2,1,"
+                + "MustCallChecker=1;ResourceLeakChecker=0",
+            "\"dir/A,B.java\",@NonNull,org.checkerframework.checker.nullness.qual.NonNull;"
+                + "org.checkerframework.checker.nonempty.qual.NonNull,2,2,0,"),
+        write(Paths.get("dir/A,B.java"), CountRecordWriter.Format.CSV));
+  }
+}
@@ -0,0 +1,132 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Patch;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class FingerprintDiffTest {
+
+  /**
+   * Returns the deltas of a patch as strings, so that patches can be compared.
+   *
+   * @param patch a patch
+   * @return the type, positions, and lines of each delta
+   */
+  private static List<String> describe(Patch<String> patch) {
+    List<String> result = new ArrayList<>();
+    for (AbstractDelta<String> delta : patch.getDeltas()) {
+      result.add(
+          delta.getType()
+              + " "
+              + delta.getSource().getPosition()
+              + delta.getSource().getLines()
+              + " "
+              + delta.getTarget().getPosition()
+              + delta.getTarget().getLines());
+    }
+    return result;
+  }
+
+  /**
+   * Checks that the fingerprint diff of two lists of lines is the diff of java-diff-utils.
+   *
+   * @param original the original lines
+   * @param revised the revised lines
+   */
+  private static void assertSameDiff(List<String> original, List<String> revised) {
+    assertEquals(
+        describe(DiffUtils.diff(original, revised)),
+        describe(InferredAnnosCounter.DiffEngine.FINGERPRINT.create(original).diff(revised)));
+  }
+
+  @Test
+  public void equalLinesHaveEqualFingerprints() {
+    FingerprintDiff diff =
+        new FingerprintDiff(
+            Arrays.asList("@Owning", "int x;"), FingerprintDiff::computeMyersChanges);
+    assertEquals(diff.fingerprint("@Owning"), diff.fingerprint(new String("@Owning")));
+    assertNotEquals(diff.fingerprint("@Owning"), diff.fingerprint("int x;"));
+    assertNotEquals(diff.fingerprint("@Owning"), diff.fingerprint("@NotOwning"));
+  }
+
+  @Test
+  public void linesThatAreNotInTheOriginalFileMatchNoLineOfIt() {
+    FingerprintDiff diff =
+        new FingerprintDiff(
+            Arrays.asList("@Owning", "int x;"), FingerprintDiff::computeMyersChanges);
+    long absent = diff.fingerprint("@NotOwning");
+    assertEquals(absent, diff.fingerprint("@MustCall"));
+    assertNotEquals(absent, diff.fingerprint("@Owning"));
+    assertNotEquals(absent, diff.fingerprint("int x;"));
+  }
+
+  @Test
+  public void agreesWithMyersOnSmallCases() {
+    List<String> original = Arrays.asList("class A {", "@Owning", "int x;", "}");
+    assertSameDiff(original, original);
+    assertSameDiff(original, Arrays.asList("class A {", "int x;", "}"));
+    assertSameDiff(original, Arrays.asList("class A {", "@NotOwning", "int x;", "}"));
+    assertSameDiff(original, Arrays.asList("class A {", "@Owning", "@Pure", "int x;", "}"));
+    assertSameDiff(original, Collections.emptyList());
+    assertSameDiff(Collections.emptyList(), original);
+    assertSameDiff(Collections.emptyList(), Collections.emptyList());
+  }
+
+  @Test
+  public void agreesWithMyersOnRandomLines() {
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      List<String> original = new ArrayList<>();
+      List<String> revised = new ArrayList<>();
+      for (int j = random.nextInt(40); j > 0; j--) {
+        original.add("line" + random.nextInt(6));
+      }
+      for (int j = random.nextInt(40); j > 0; j--) {
+        revised.add("line" + random.nextInt(6));
+      }
+      assertSameDiff(original, revised);
+    }
+  }
+
+  @Test
+  public void countsTheSameAsTheDefaultEngine() {
+    for (String name :
+        Arrays.asList("MatchThreeAnnotations", "AnnotationMismatch", "MultiLineAnnotation")) {
+      List<Path> ajavas = Collections.singletonList(Paths.get("testCases/" + name + ".ajava"));
+      AnnotationCounts myers =
+          InferredAnnosCounter.count(
+              Paths.get("testCases/" + name + ".java"),
+              ajavas,
+              InferredAnnosCounter.Matcher.DIFF,
+              InferredAnnosCounter.DiffEngine.MYERS);
+      AnnotationCounts fingerprint =
+          InferredAnnosCounter.count(
+              Paths.get("testCases/" + name + ".java"),
+              ajavas,
+              InferredAnnosCounter.Matcher.DIFF,
+              InferredAnnosCounter.DiffEngine.FINGERPRINT);
+      assertEquals(name, myers.getCounts().toString(), fingerprint.getCounts().toString());
+    }
+  }
+
+  @Test
+  public void selectedWithAFlag() {
+    assertEquals(
+        InferredAnnosCounter.DiffEngine.FINGERPRINT,
+        InferredAnnosCounter.parseDiffEngine("--diff=fingerprint"));
+    assertEquals(
+        InferredAnnosCounter.DiffEngine.MYERS,
+        InferredAnnosCounter.parseDiffEngine("--diff=myers"));
+  }
+}
@@ -0,0 +1,125 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.github.difflib.algorithm.Change;
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.DeltaType;
+import com.github.difflib.patch.Patch;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class HistogramDiffTest {
+
+  /**
+   * Checks that some changes turn the source into the target, that the lines outside the changes
+   * are equal, and that no two changes touch.
+   *
+   * @param source the fingerprints of the original file
+   * @param target the fingerprints of the .ajava file
+   * @param changes the changes, in order
+   */
+  private static void assertValid(long[] source, long[] target, List<Change> changes) {
+    int i = 0;
+    int j = 0;
+    for (Change change : changes) {
+      assertTrue(change.startOriginal > i || change.startRevised > j || (i == 0 && j == 0));
+      assertEquals(change.startOriginal - i, change.startRevised - j);
+      while (i < change.startOriginal) {
+        assertEquals(source[i], target[j]);
+        i++;
+        j++;
+      }
+      i = change.endOriginal;
+      j = change.endRevised;
+    }
+    assertEquals(source.length - i, target.length - j);
+    while (i < source.length) {
+      assertEquals(source[i], target[j]);
+      i++;
+      j++;
+    }
+  }
+
+  @Test
+  public void producesValidChangesOnRandomLines() {
+    Random random = new Random(7);
+    for (int n = 0; n < 300; n++) {
+      long[] source = new long[random.nextInt(50)];
+      long[] target = new long[random.nextInt(50)];
+      for (int i = 0; i < source.length; i++) {
+        source[i] = random.nextInt(8);
+      }
+      for (int i = 0; i < target.length; i++) {
+        target[i] = random.nextInt(8);
+      }
+      assertValid(source, target, HistogramDiff.computeChanges(source, target));
+    }
+  }
+
+  @Test
+  public void identicalFilesHaveNoChanges() {
+    long[] lines = {1, 2, 3, 2, 1};
+    assertTrue(HistogramDiff.computeChanges(lines, lines.clone()).isEmpty());
+    assertTrue(HistogramDiff.computeChanges(new long[0], new long[0]).isEmpty());
+  }
+
+  @Test
+  public void keepsMovedBlocksShort() {
+    // The ajava file moves method a() after method b(); only the annotation of a() differs.
+    List<String> a = Arrays.asList("void a() {", "x();", "}");
+    List<String> b = Arrays.asList("void b() {", "y();", "}");
+    List<String> original = new ArrayList<>();
+    original.add("@Owning");
+    original.addAll(a);
+    original.addAll(b);
+    List<String> revised = new ArrayList<>(b);
+    revised.add("@NotOwning");
+    revised.addAll(a);
+    Patch<String> patch = InferredAnnosCounter.DiffEngine.HISTOGRAM.create(original).diff(revised);
+    List<String> changedSourceLines = new ArrayList<>();
+    for (AbstractDelta<String> delta : patch.getDeltas()) {
+      changedSourceLines.addAll(delta.getSource().getLines());
+    }
+    assertTrue(changedSourceLines.contains("@Owning"));
+    assertTrue(changedSourceLines.size() <= 4);
+  }
+
+  @Test
+  public void insertsAndDeletesAtTheEnds() {
+    List<Change> changes = HistogramDiff.computeChanges(new long[] {1, 2}, new long[] {1, 2, 3});
+    assertEquals(1, changes.size());
+    assertEquals(DeltaType.INSERT, changes.get(0).deltaType);
+    changes = HistogramDiff.computeChanges(new long[] {0, 1, 2}, new long[] {1, 2});
+    assertEquals(1, changes.size());
+    assertEquals(DeltaType.DELETE, changes.get(0).deltaType);
+  }
+
+  @Test
+  public void countsTheSameAsMyersOnTheTestCases() {
+    for (String name :
+        Arrays.asList("MatchThreeAnnotations", "AnnotationMismatch", "MultiLineAnnotation")) {
+      List<Path> ajavas = Collections.singletonList(Paths.get("testCases/" + name + ".ajava"));
+      AnnotationCounts myers =
+          InferredAnnosCounter.count(
+              Paths.get("testCases/" + name + ".java"),
+              ajavas,
+              InferredAnnosCounter.Matcher.DIFF,
+              InferredAnnosCounter.DiffEngine.MYERS);
+      AnnotationCounts histogram =
+          InferredAnnosCounter.count(
+              Paths.get("testCases/" + name + ".java"),
+              ajavas,
+              InferredAnnosCounter.Matcher.DIFF,
+              InferredAnnosCounter.DiffEngine.HISTOGRAM);
+      assertEquals(name, myers.getCounts().toString(), histogram.getCounts().toString());
+    }
+  }
+}
@@ -1,9 +1,14 @@
 package org.checkerframework.wholeprograminference.inferredannoscounter;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Collections;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -302,4 +307,53 @@ public class InferredAnnosCounterTest {
             + outputStreamCaptor,
         outputStreamCaptor.toString().trim().contains(line2));
   }
+
+  @Test
+  public void countReturnsResultsWithoutPrinting() {
+    AnnotationCounts counts =
+        InferredAnnosCounter.count(
+            Paths.get("testCases/MatchThreeAnnotations.java"),
+            Collections.singletonList(Paths.get("testCases/MatchThreeAnnotations.ajava")));
+    assertEquals(3, counts.getCounts().size());
+    AnnotationCounts.Count pure = counts.get("@Pure");
+    assertNotNull(pure);
+    assertEquals(1, pure.getTotal());
+    assertEquals(1, pure.getMatched());
+    assertEquals(0, pure.getIgnored());
+    assertTrue(outputStreamCaptor.toString().isEmpty());
+  }
+
+  @Test
+  public void countReportsIgnoredAnnotations() {
+    AnnotationCounts counts =
+        InferredAnnosCounter.count(
+            Paths.get("testCases/AnnotationWithinWarningSuppression.java"),
+            Collections.singletonList(
+                Paths.get("testCases/AnnotationWithinWarningSuppression.ajava")));
+    AnnotationCounts.Count nonNull = counts.get("@NonNull");
+    assertNotNull(nonNull);
+    assertEquals(0, nonNull.getTotal());
+    assertEquals(1, nonNull.getIgnored());
+    assertTrue(counts.isSuppressionAnalyzed());
+  }
+
+  @Test
+  public void skipsTheSuppressionAnalysisWithoutSuppressWarnings() {
+    AnnotationCounts counts =
+        InferredAnnosCounter.count(
+            Paths.get("testCases/MatchThreeAnnotations.java"),
+            Collections.singletonList(Paths.get("testCases/MatchThreeAnnotations.ajava")));
+    assertFalse(counts.isSuppressionAnalyzed());
+    assertEquals("@Pure got 1/1", String.valueOf(counts.get("@Pure")));
+  }
+
+  @Test
+  public void skipsTheAjavaFilesWhenNothingIsTracked() {
+    // The .ajava file does not exist, so this would fail if it were opened.
+    AnnotationCounts counts =
+        InferredAnnosCounter.count(
+            Paths.get("testCases/NoTrackedAnnotations.java"),
+            Collections.singletonList(Paths.get("testCases/NoTrackedAnnotations.ajava")));
+    assertTrue(counts.getCounts().isEmpty());
+  }
 }
@@ -0,0 +1,102 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.difflib.patch.AbstractDelta;
+import com.github.difflib.patch.Patch;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class MemberDiffTest {
+
+  /**
+   * Returns the source lines of the deltas of a patch, with their positions.
+   *
+   * @param patch a patch
+   * @return the position and the source lines of each delta
+   */
+  private static List<String> sourceLines(Patch<String> patch) {
+    List<String> result = new ArrayList<>();
+    for (AbstractDelta<String> delta : patch.getDeltas()) {
+      result.add(delta.getSource().getPosition() + " " + delta.getSource().getLines());
+    }
+    return result;
+  }
+
+  @Test
+  public void splitsAtTheMembersOfTopLevelTypes() {
+    ParsedFile file = ParsedFile.parse(Paths.get("testCases/TestValueExtractor.java"));
+    List<String> lines = InferredAnnosCounter.normalizeLines(file);
+    MemberChunks chunks = MemberChunks.split(file, lines);
+    assertNotNull(chunks);
+    int members = file.getCompilationUnit().getType(0).getMembers().size();
+    assertEquals(2 * members + 1, chunks.size());
+    assertEquals(0, chunks.start(0));
+    assertEquals(lines.size(), chunks.end(chunks.size() - 1));
+    for (int segment = 1; segment < chunks.size(); segment++) {
+      assertEquals(chunks.end(segment - 1), chunks.start(segment));
+    }
+    // The second segment is the first member, the field valueSequences.
+    assertEquals("private final Set<Sequence> valueSequences;", lines.get(chunks.start(1)));
+    assertEquals(1, chunks.end(1) - chunks.start(1));
+  }
+
+  @Test
+  public void doesNotSplitWhenAMemberIsNotFound() {
+    ParsedFile file = ParsedFile.parse(Paths.get("testCases/TestValueExtractor.java"));
+    List<String> lines = new ArrayList<>(InferredAnnosCounter.normalizeLines(file));
+    lines.remove("private final Set<Sequence> valueSequences;");
+    assertNull(MemberChunks.split(file, lines));
+  }
+
+  @Test
+  public void alignsFilesWithTheSameMembers() {
+    ParsedFile original = ParsedFile.parse(Paths.get("testCases/AnnotationMismatch.java"));
+    ParsedFile ajava = ParsedFile.parse(Paths.get("testCases/AnnotationMismatch.ajava"));
+    ParsedFile other = ParsedFile.parse(Paths.get("testCases/MatchThreeAnnotations.java"));
+    MemberChunks originalChunks =
+        MemberChunks.split(original, InferredAnnosCounter.normalizeLines(original));
+    MemberChunks ajavaChunks =
+        MemberChunks.split(ajava, InferredAnnosCounter.normalizeLines(ajava));
+    MemberChunks otherChunks =
+        MemberChunks.split(other, InferredAnnosCounter.normalizeLines(other));
+    assertNotNull(originalChunks);
+    assertNotNull(ajavaChunks);
+    assertNotNull(otherChunks);
+    assertTrue(originalChunks.isAlignedWith(ajavaChunks));
+    assertFalse(originalChunks.isAlignedWith(otherChunks));
+  }
+
+  @Test
+  public void diffsEachMemberLikeTheWholeFile() {
+    for (String name :
+        new String[] {"AnnotationMismatch", "MatchThreeAnnotations", "GJFMultiLine"}) {
+      ParsedFile original = ParsedFile.parse(Paths.get("testCases/" + name + ".java"));
+      ParsedFile ajava = ParsedFile.parse(Paths.get("testCases/" + name + ".ajava"));
+      List<String> originalLines = InferredAnnosCounter.normalizeLines(original);
+      List<String> ajavaLines = InferredAnnosCounter.normalizeLines(ajava);
+      MemberChunks originalChunks = MemberChunks.split(original, originalLines);
+      MemberChunks ajavaChunks = MemberChunks.split(ajava, ajavaLines);
+      assertNotNull(name, originalChunks);
+      assertNotNull(name, ajavaChunks);
+      for (InferredAnnosCounter.DiffEngine engine : InferredAnnosCounter.DiffEngine.values()) {
+        Patch<String> whole = engine.create(originalLines).diff(ajavaLines);
+        Patch<String> byMember =
+            new MemberDiff(engine, originalLines, originalChunks).diff(ajavaLines, ajavaChunks);
+        assertEquals(name + " " + engine, sourceLines(whole), sourceLines(byMember));
+      }
+    }
+  }
+
+  @Test
+  public void onlySplitsLargeFiles() {
+    assertFalse(MemberChunks.shouldSplit(MemberChunks.MIN_LINES_TO_SPLIT - 1));
+    assertTrue(MemberChunks.shouldSplit(MemberChunks.MIN_LINES_TO_SPLIT));
+  }
+}
@@ -0,0 +1,105 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MissedAnnotationWriterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Path original = Paths.get("testCases/MissedAfterComments.java");
+  private final Path ajava = Paths.get("testCases/MissedAfterComments.ajava");
+
+  /**
+   * Returns the missed annotations as strings.
+   *
+   * @param counts some counts
+   * @return the missed annotations of counts, as strings
+   */
+  private static List<String> strings(AnnotationCounts counts) {
+    List<String> result = new ArrayList<>();
+    for (MissedAnnotation missed : counts.getMissed()) {
+      result.add(missed.toString());
+    }
+    return result;
+  }
+
+  @Test
+  public void locatesTheMissedAnnotationsInTheFileAsWritten() {
+    for (InferredAnnosCounter.Matcher matcher : InferredAnnosCounter.Matcher.values()) {
+      AnnotationCounts counts =
+          InferredAnnosCounter.count(original, Collections.singletonList(ajava), matcher);
+      assertEquals(
+          matcher.toString(),
+          Arrays.asList(
+              "11:2: @EnsuresCalledMethods on type MissedAfterComments > method close() : decl",
+              "14:12: @Owning on type MissedAfterComments > method open(Socket) > param 0 : decl"),
+          strings(counts));
+    }
+  }
+
+  @Test
+  public void theSameLocationsComeFromTheCache() {
+    NormalizedFileCache cache =
+        new NormalizedFileCache(
+            folder.getRoot().toPath(), 1 << 20, QualifierRegistry.getDefault());
+    List<String> expected =
+        strings(InferredAnnosCounter.count(original, Collections.singletonList(ajava)));
+    for (int run = 0; run < 2; run++) {
+      AnnotationCounts counts =
+          InferredAnnosCounter.count(
+              original,
+              Collections.singletonList(ajava),
+              InferredAnnosCounter.Matcher.DIFF,
+              InferredAnnosCounter.DiffEngine.MYERS,
+              QualifierRegistry.getDefault(),
+              cache);
+      assertEquals(expected, strings(counts));
+    }
+  }
+
+  @Test
+  public void doesNotReportIgnoredAnnotations() {
+    for (InferredAnnosCounter.Matcher matcher : InferredAnnosCounter.Matcher.values()) {
+      AnnotationCounts counts =
+          InferredAnnosCounter.count(
+              Paths.get("testCases/AnnotationWithinWarningSuppression.java"),
+              Collections.singletonList(
+                  Paths.get("testCases/AnnotationWithinWarningSuppression.ajava")),
+              matcher);
+      assertTrue(matcher.toString(), counts.getMissed().isEmpty());
+    }
+  }
+
+  @Test
+  public void writesOneLinePerMissedAnnotation() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("missed.txt");
+    try (MissedAnnotationWriter writer = new MissedAnnotationWriter(file)) {
+      writer.write(
+          original, InferredAnnosCounter.count(original, Collections.singletonList(ajava)));
+      // a file without missed annotations writes nothing
+      writer.write(
+          ajava, InferredAnnosCounter.count(original, Collections.singletonList(original)));
+    }
+    assertEquals(
+        Arrays.asList(
+            original + ":11:2: @EnsuresCalledMethods on type MissedAfterComments > method close()"
+                + " : decl",
+            original + ":14:12: @Owning on type MissedAfterComments > method open(Socket) > param 0"
+                + " : decl"),
+        Files.readAllLines(file, StandardCharsets.UTF_8));
+  }
+}
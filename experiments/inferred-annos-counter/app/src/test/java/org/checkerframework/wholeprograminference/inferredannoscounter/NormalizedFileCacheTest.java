@@ -0,0 +1,137 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NormalizedFileCacheTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final QualifierRegistry registry = QualifierRegistry.getDefault();
+
+  /**
+   * Checks that two normalized files have the same content.
+   *
+   * @param expected the expected file
+   * @param actual the actual file
+   */
+  private static void assertSameContent(NormalizedFile expected, NormalizedFile actual) {
+    assertEquals(expected.getLines(), actual.getLines());
+    assertEquals(expected.annotationCount(), actual.annotationCount());
+    for (int i = 0; i < expected.annotationCount(); i++) {
+      assertEquals(expected.annotationLine(i), actual.annotationLine(i));
+      assertEquals(expected.annotationName(i), actual.annotationName(i));
+      assertEquals(expected.annotationRange(i), actual.annotationRange(i));
+    }
+    assertEquals(expected.getTrackedKeys(), actual.getTrackedKeys());
+    assertEquals(expected.getIgnored(), actual.getIgnored());
+    assertEquals(expected.isSuppressionAnalyzed(), actual.isSuppressionAnalyzed());
+  }
+
+  /**
+   * Returns the total size of the entries of a cache directory.
+   *
+   * @param directory a cache directory
+   * @return the total size of the files in directory, in bytes
+   */
+  private static long directorySize(Path directory) throws IOException {
+    long result = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        result += Files.size(file);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void readsBackWhatItNormalized() throws IOException {
+    Path file = Paths.get("testCases/AnnotationWithinWarningSuppression.java");
+    byte[] content = Files.readAllBytes(file);
+    NormalizedFileCache cache =
+        new NormalizedFileCache(folder.getRoot().toPath(), 1 << 20, registry);
+    NormalizedFile first = cache.get(file, content, registry, true);
+    assertSameContent(NormalizedFile.create(ParsedFile.parse(file), registry, true), first);
+    // The second lookup is a hit, so it does not read the file: its path does not even exist.
+    NormalizedFile second = cache.get(Paths.get("missing.java"), content, registry, true);
+    assertSameContent(first, second);
+  }
+
+  @Test
+  public void keysDependOnTheContentTheKindAndTheQualifiers() {
+    NormalizedFileCache cache =
+        new NormalizedFileCache(folder.getRoot().toPath(), 1 << 20, registry);
+    NormalizedFileCache otherQualifiers =
+        new NormalizedFileCache(
+            folder.getRoot().toPath(),
+            1 << 20,
+            new QualifierRegistry(Collections.singletonList("org.checkerframework.Owning")));
+    byte[] content = {'c', 'l', 'a', 's', 's'};
+    assertEquals(cache.key(content, true), cache.key(content.clone(), true));
+    assertNotEquals(cache.key(content, true), cache.key(content, false));
+    assertNotEquals(cache.key(content, true), cache.key(new byte[] {'c'}, true));
+    assertNotEquals(cache.key(content, true), otherQualifiers.key(content, true));
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedEntries() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    List<String> names =
+        Arrays.asList(
+            "MatchThreeAnnotations",
+            "AnnotationMismatch",
+            "GJFMultiLine",
+            "MultiLineAnnotation",
+            "TestValueExtractor");
+    NormalizedFileCache unbounded = new NormalizedFileCache(directory, Long.MAX_VALUE, registry);
+    for (String name : names) {
+      Path file = Paths.get("testCases/" + name + ".java");
+      unbounded.get(file, Files.readAllBytes(file), registry, true);
+    }
+    long total = directorySize(directory);
+    NormalizedFileCache bounded = new NormalizedFileCache(directory, total / 2, registry);
+    Path file = Paths.get("testCases/AnnotationWithArgument.java");
+    bounded.get(file, Files.readAllBytes(file), registry, true);
+    assertTrue(directorySize(directory) <= total / 2);
+  }
+
+  @Test
+  public void countsTheSameWithTheCache() {
+    NormalizedFileCache cache =
+        new NormalizedFileCache(folder.getRoot().toPath(), 1 << 20, registry);
+    for (String name :
+        Arrays.asList("MatchThreeAnnotations", "AnnotationMismatch", "MultiLineAnnotation")) {
+      Path original = Paths.get("testCases/" + name + ".java");
+      List<Path> ajavas = Collections.singletonList(Paths.get("testCases/" + name + ".ajava"));
+      String expected =
+          InferredAnnosCounter.count(original, ajavas, InferredAnnosCounter.Matcher.DIFF)
+              .getCounts()
+              .toString();
+      // once to fill the cache, and once to read from it
+      for (int run = 0; run < 2; run++) {
+        AnnotationCounts counts =
+            InferredAnnosCounter.count(
+                original,
+                ajavas,
+                InferredAnnosCounter.Matcher.DIFF,
+                InferredAnnosCounter.DiffEngine.MYERS,
+                registry,
+                cache);
+        assertEquals(name, expected, counts.getCounts().toString());
+      }
+    }
+  }
+}
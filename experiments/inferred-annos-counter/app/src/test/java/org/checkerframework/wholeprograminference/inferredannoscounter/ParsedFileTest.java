@@ -0,0 +1,62 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+public class ParsedFileTest {
+
+  @Test
+  public void textAndAnnotationsComeFromTheSameParse() {
+    ParsedFile file = ParsedFile.parse(Paths.get("testCases/CommentsBeforePackage.java"));
+    String text = file.getText();
+    assertFalse(text, text.contains("This comment should be removed"));
+    assertTrue(text, text.contains("@NonNull"));
+    List<AnnotationExpr> annotations = file.getAnnotations();
+    assertEquals(2, annotations.size());
+    assertEquals("SuppressWarnings", annotations.get(0).getNameAsString());
+    assertEquals("NonNull", annotations.get(1).getNameAsString());
+  }
+
+  @Test
+  public void theLexerFindsThePrintedAnnotationsInTheText() throws IOException {
+    try (Stream<Path> files = Files.list(Paths.get("testCases"))) {
+      for (Path path : (Iterable<Path>) files::iterator) {
+        if (Files.isDirectory(path)) {
+          continue;
+        }
+        ParsedFile file = ParsedFile.parse(path);
+        List<String> lexed = new ArrayList<>();
+        for (AnnotationLexer.Token token : AnnotationLexer.lex(file.getText())) {
+          lexed.add(token.name);
+        }
+        List<String> printed = new ArrayList<>();
+        for (AnnotationExpr anno : file.getPrintedAnnotations()) {
+          printed.add(anno.getNameAsString());
+        }
+        assertEquals(path.toString(), printed, lexed);
+      }
+    }
+  }
+
+  @Test
+  public void invalidFile() {
+    try {
+      ParsedFile.parse(Paths.get("meaningless.java"));
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("Could not read file: meaningless.java"));
+      return;
+    }
+    throw new AssertionError("Parsing a file that does not exist should fail");
+  }
+}
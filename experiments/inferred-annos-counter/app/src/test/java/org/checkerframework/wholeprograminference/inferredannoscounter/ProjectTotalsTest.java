@@ -0,0 +1,105 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ProjectTotalsTest {
+
+  private final AnnotationCounts first =
+      new AnnotationCounts(
+          Arrays.asList(
+              new AnnotationCounts.Count("@Owning", 3, 1, 1),
+              new AnnotationCounts.Count("@Pure", 5, 0, 5)),
+          false);
+
+  private final AnnotationCounts second =
+      new AnnotationCounts(
+          Arrays.asList(
+              new AnnotationCounts.Count("@Owning", 2, 0, 2),
+              new AnnotationCounts.Count("@NotOwning", 1, 0, 0)),
+          false);
+
+  @Test
+  public void sumsTheCountedAnnotations() {
+    ProjectTotals totals = new ProjectTotals(ProjectTotals.DEFAULT_ANNOTATIONS);
+    totals.add(first);
+    totals.add(second);
+    assertEquals(3, totals.getMatched("@Owning"));
+    assertEquals(4, totals.getTotal("@Owning"));
+    assertEquals(0, totals.getMatched("@NotOwning"));
+    assertEquals(1, totals.getTotal("@NotOwning"));
+    assertEquals(0, totals.getTotal("@MustCallAlias"));
+  }
+
+  @Test
+  public void mergingIsTheSameAsAdding() {
+    ProjectTotals left = new ProjectTotals(ProjectTotals.DEFAULT_ANNOTATIONS);
+    left.add(first);
+    ProjectTotals right = new ProjectTotals(ProjectTotals.DEFAULT_ANNOTATIONS);
+    right.add(second);
+    left.merge(right);
+    ProjectTotals both = new ProjectTotals(ProjectTotals.DEFAULT_ANNOTATIONS);
+    both.add(first);
+    both.add(second);
+    assertEquals(print(both), print(left));
+  }
+
+  @Test
+  public void printsOneLinePerAnnotation() {
+    ProjectTotals totals = new ProjectTotals(ProjectTotals.parseAnnotations("Pure, @Owning"));
+    totals.add(first);
+    totals.add(second);
+    assertEquals(
+        "Total @Pure: 5/5" + System.lineSeparator() + "Total @Owning: 3/4" + System.lineSeparator(),
+        print(totals));
+  }
+
+  @Test
+  public void totalsEachChecker() {
+    Map<String, Integer> firstBy = new LinkedHashMap<>();
+    firstBy.put("MustCallChecker", 0);
+    firstBy.put("ResourceLeakChecker", 2);
+    Map<String, Integer> secondBy = Collections.singletonMap("ResourceLeakChecker", 1);
+    ProjectTotals totals = new ProjectTotals(ProjectTotals.parseAnnotations("@Owning"));
+    totals.add(
+        new AnnotationCounts(
+            Collections.singletonList(new AnnotationCounts.Count("@Owning", 3, 0, 2, firstBy)),
+            false));
+    ProjectTotals other = new ProjectTotals(ProjectTotals.parseAnnotations("@Owning"));
+    other.add(
+        new AnnotationCounts(
+            Collections.singletonList(new AnnotationCounts.Count("@Owning", 1, 0, 1, secondBy)),
+            false));
+    totals.merge(other);
+    assertEquals(0, totals.getMatchedBy("@Owning", "MustCallChecker"));
+    assertEquals(3, totals.getMatchedBy("@Owning", "ResourceLeakChecker"));
+    assertEquals(
+        "Total @Owning: 3/4"
+            + System.lineSeparator()
+            + "Total @Owning by MustCallChecker: 0/4"
+            + System.lineSeparator()
+            + "Total @Owning by ResourceLeakChecker: 3/4"
+            + System.lineSeparator(),
+        print(totals));
+  }
+
+  /**
+   * Returns the printed totals.
+   *
+   * @param totals some totals
+   * @return what {@link ProjectTotals#print} prints
+   */
+  private static String print(ProjectTotals totals) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    totals.print(new PrintStream(bytes, true));
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
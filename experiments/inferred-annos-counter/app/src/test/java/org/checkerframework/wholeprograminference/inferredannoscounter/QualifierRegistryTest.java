@@ -0,0 +1,75 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class QualifierRegistryTest {
+
+  private final QualifierRegistry registry =
+      new QualifierRegistry(
+          Arrays.asList(
+              "org.checkerframework.dataflow.qual.Pure",
+              "org.checkerframework.checker.nullness.qual.NonNull",
+              "org.checkerframework.checker.nonempty.qual.NonNull",
+              "LbTop"));
+
+  @Test
+  public void givesEachQualifierACompactId() {
+    assertEquals(3, registry.size());
+    int pure = registry.getId("@Pure");
+    int nonNull = registry.getId("@NonNull");
+    assertNotEquals(pure, nonNull);
+    assertEquals("@Pure", registry.getName(pure));
+    assertEquals("@NonNull", registry.getName(nonNull));
+    assertEquals("@LbTop", registry.getName(registry.getId("@LbTop")));
+    assertEquals(-1, registry.getId("@Nullable"));
+    assertTrue(registry.isTracked("@Pure"));
+    assertFalse(registry.isTracked("Pure"));
+  }
+
+  @Test
+  public void mapsSimpleNamesToFullyQualifiedNames() {
+    assertEquals(
+        Arrays.asList(
+            "org.checkerframework.checker.nullness.qual.NonNull",
+            "org.checkerframework.checker.nonempty.qual.NonNull"),
+        registry.getFullyQualifiedNames("NonNull"));
+    assertEquals(
+        Collections.singletonList("Untracked"), registry.getFullyQualifiedNames("Untracked"));
+  }
+
+  @Test
+  public void defaultRegistryIsReadOnce() {
+    assertSame(QualifierRegistry.getDefault(), QualifierRegistry.getDefault());
+    assertTrue(QualifierRegistry.getDefault().isTracked("@Owning"));
+  }
+
+  /**
+   * Runs the pre-scan of the test registry on a string.
+   *
+   * @param content the content of a file
+   * @return the result of mayContainTrackedQualifier
+   */
+  private boolean mayContain(String content) {
+    return registry.mayContainTrackedQualifier(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void preScanFindsSimpleAndFullyQualifiedNames() {
+    assertTrue(mayContain("class A { @Pure int f() { return 0; } }"));
+    assertTrue(mayContain("class A { @org.checkerframework.dataflow.qual.Pure int f(); }"));
+    assertTrue(mayContain("class A { java.lang.@NonNull String s; }"));
+    assertTrue(mayContain("class A { @ LbTop int x; }"));
+    assertFalse(mayContain("class A { @Override public String toString() { return \"\"; } }"));
+    assertFalse(mayContain("class A { @PureExtension int f(); @interface Pure {} }"));
+    assertFalse(mayContain("class A { int Pure; }"));
+  }
+}
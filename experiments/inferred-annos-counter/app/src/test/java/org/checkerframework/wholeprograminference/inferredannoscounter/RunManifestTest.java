@@ -0,0 +1,122 @@
+package org.checkerframework.wholeprograminference.inferredannoscounter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunManifestTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Path humanWritten = Paths.get("testCases/batch/human-written");
+  private final Path generated = Paths.get("testCases/batch/generated");
+  private final Path paired = humanWritten.resolve("paired/MatchThreeAnnotations.java");
+
+  private final String settings =
+      RunManifest.settings(
+          InferredAnnosCounter.Matcher.DIFF,
+          InferredAnnosCounter.DiffEngine.MYERS,
+          QualifierRegistry.getDefault());
+
+  /**
+   * Writes a manifest with a single entry for the paired file of the batch test case.
+   *
+   * @return the manifest file
+   */
+  private Path writeManifest() {
+    List<Path> ajavas = BatchCounter.pairFiles(humanWritten, generated).get(paired);
+    Map<String, RunManifest.Entry> entries = new LinkedHashMap<>();
+    entries.put(
+        "paired/MatchThreeAnnotations.java",
+        new RunManifest.Entry(
+            RunManifest.inputs(paired, ajavas, generated),
+            InferredAnnosCounter.count(paired, ajavas)));
+    Path file = folder.getRoot().toPath().resolve("batch.manifest");
+    RunManifest.write(file, settings, entries);
+    return file;
+  }
+
+  @Test
+  public void readsBackTheCounts() {
+    Path file = writeManifest();
+    List<Path> ajavas = BatchCounter.pairFiles(humanWritten, generated).get(paired);
+    List<String> inputs = RunManifest.inputs(paired, ajavas, generated);
+    AnnotationCounts counts =
+        RunManifest.read(file, settings).lookup("paired/MatchThreeAnnotations.java", inputs);
+    assertNotNull(counts);
+    assertEquals(
+        InferredAnnosCounter.count(paired, ajavas).getCounts().toString(),
+        counts.getCounts().toString());
+    assertEquals(
+        InferredAnnosCounter.count(paired, ajavas).get("@Pure").getIgnored(),
+        counts.get("@Pure").getIgnored());
+    assertEquals(
+        InferredAnnosCounter.count(paired, ajavas).getMissed().toString(),
+        counts.getMissed().toString());
+  }
+
+  @Test
+  public void ignoresChangedFiles() {
+    Path file = writeManifest();
+    RunManifest manifest = RunManifest.read(file, settings);
+    List<Path> ajavas = BatchCounter.pairFiles(humanWritten, generated).get(paired);
+    List<String> inputs = new ArrayList<>(RunManifest.inputs(paired, ajavas, generated));
+    // a different .ajava file
+    List<String> changed = new ArrayList<>(inputs);
+    changed.set(2, ContentHash.of(new byte[] {1}));
+    assertNull(manifest.lookup("paired/MatchThreeAnnotations.java", changed));
+    // one more .ajava file
+    changed = new ArrayList<>(inputs);
+    changed.addAll(Arrays.asList("paired/MatchThreeAnnotations-Other.ajava", inputs.get(2)));
+    assertNull(manifest.lookup("paired/MatchThreeAnnotations.java", changed));
+    // another file
+    assertNull(manifest.lookup("unpaired/MatchThreeAnnotations.java", inputs));
+  }
+
+  @Test
+  public void ignoresManifestsOfOtherSettings() {
+    Path file = writeManifest();
+    String otherSettings =
+        RunManifest.settings(
+            InferredAnnosCounter.Matcher.AST,
+            InferredAnnosCounter.DiffEngine.MYERS,
+            QualifierRegistry.getDefault());
+    assertNotEquals(settings, otherSettings);
+    List<Path> ajavas = BatchCounter.pairFiles(humanWritten, generated).get(paired);
+    assertNull(
+        RunManifest.read(file, otherSettings)
+            .lookup(
+                "paired/MatchThreeAnnotations.java",
+                RunManifest.inputs(paired, ajavas, generated)));
+  }
+
+  @Test
+  public void aMissingManifestIsEmpty() {
+    Path file = folder.getRoot().toPath().resolve("missing.manifest");
+    List<Path> ajavas = BatchCounter.pairFiles(humanWritten, generated).get(paired);
+    assertNull(
+        RunManifest.read(file, settings)
+            .lookup(
+                "paired/MatchThreeAnnotations.java",
+                RunManifest.inputs(paired, ajavas, generated)));
+  }
+
+  @Test
+  public void hashesContentAsHexadecimal() {
+    assertEquals(
+        "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        ContentHash.of(new byte[0]));
+  }
+}
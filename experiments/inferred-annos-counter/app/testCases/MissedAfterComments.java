@@ -0,0 +1,15 @@
+/*
+ * A file with comments, which the counter removes before the diff.
+ */
+public class MissedAfterComments {
+	// a field
+	@Owning Socket socket;
+
+	/**
+	 * A method.
+	 */
+	@EnsuresCalledMethods(value = "this.socket", methods = "close")
+	void close() {}
+
+	void open(@Owning /* the socket */ Socket s) {}
+}
@@ -0,0 +1,6 @@
+public class NoTrackedAnnotations {
+	@Override
+	public String toString() {
+		return "Pure";
+	}
+}
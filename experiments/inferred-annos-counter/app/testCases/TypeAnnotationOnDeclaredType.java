@@ -0,0 +1,9 @@
+import java.util.List;
+
+public class TypeAnnotationOnDeclaredType {
+  private @Nullable String name;
+
+  public @Nullable String getName(List<@NonNull String> names) {
+    return name;
+  }
+}
@@ -0,0 +1,9 @@
+public class MatchThreeAnnotations {
+	public static void main() {
+ 		@Pure int x;
+ 		//some methods here...//
+ 		@NonNull int y;
+ 		@SideEffectFree int z;
+	}
+} 
+
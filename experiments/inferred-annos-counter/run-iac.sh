@@ -1,12 +1,19 @@
 #!/bin/bash
 
-# This script invokes the InferredAnnosCounter repeatedly on each java file
-# and its corresponding ajava files in the given pair of similarly-structured
-# directories.
+# This script invokes the InferredAnnosCounter on each java file and its
+# corresponding ajava files in the given pair of similarly-structured
+# directories. All files are processed in a single JVM by the batch mode
+# of the InferredAnnosCounter.
 
 # inputs:
 # $1: the absolute path to the root source directory of the Java files
 # $2: the absolute path to the root source directory of the generated ajava files
+#
+# The normalized files are cached in .iac-cache next to this script, so that
+# a re-run does not parse the files that did not change, and the counts of
+# each pair of roots are kept in a manifest there, so that a re-run only
+# counts the Java files whose content or ajava files changed. Set
+# IAC_CACHE_DIR to use another directory.
 
 ROOT_IAC_DIR=$( cd -- "$( dirname -- "${BASH_SOURCE[0]}" )" &> /dev/null && pwd )
 
@@ -19,22 +26,9 @@ popd () {
     command popd "$@" > /dev/null
 }
 
-# this runs the IAC, passing a single java file and then the list of ajava files as the arguments
-run_iac () {
-    pushd "${ROOT_IAC_DIR}" || exit
-    ./gradlew -q run --args="$*"
-    popd || exit
-}
-
-JAVA_FILES=$(find "${1}" -name "*.java")
-
-for file in ${JAVA_FILES}; do
-    echo "${file}:"
-    filenodirname="${file##*/}"
-    filebasename="${filenodirname%.*}"
-    AJAVA_FILES=$(find "${2}" -name "${filebasename}-*.ajava")
-    AJAVA_SPACE=$(echo "${AJAVA_FILES}" | tr "\n" " ")
-    run_iac "${file}" "${AJAVA_SPACE}"
-done
-
-# TODO: combine the outputs
+pushd "${ROOT_IAC_DIR}" || exit
+CACHE_DIR="${IAC_CACHE_DIR:-${ROOT_IAC_DIR}/.iac-cache}"
+MANIFEST="${CACHE_DIR}/$(echo "${1} ${2}" | sha256sum | cut -c1-16).manifest"
+mkdir -p "${CACHE_DIR}"
+./gradlew -q runBatch --args="--cache=${CACHE_DIR} --manifest=${MANIFEST} ${1} ${2}"
+popd || exit